@@ -0,0 +1,80 @@
+/**
+ * This class is used to model a token bucket limiting the rate at which a
+ * server accepts new connections. Connections beyond the rate are left in the
+ * listen backlog of the server socket until a permit is available, so that a
+ * reconnect storm is absorbed by the kernel rather than by threads of the
+ * server.
+ * <p>
+ * A limiter is only used by the thread accepting the connections, and is not
+ * thread-safe.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class AcceptRateLimiter {
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private final long nanosPerPermit; // time needed to earn a permit
+	private final long tolerance; // how far ahead of time permits can be taken
+	// the time (from System.nanoTime()) at which the permits taken so far
+	// would have been earned at the steady rate
+	private long theoreticalTime;
+
+	/**
+	 * Creates and returns an instance of the AcceptRateLimiter class.
+	 * 
+	 * @param permitsPerSecond
+	 *            the number of connections accepted per second
+	 * @param maxBurst
+	 *            the number of connections that can be accepted at once
+	 *            after an idle period
+	 */
+	public AcceptRateLimiter(int permitsPerSecond, int maxBurst) {
+		if (permitsPerSecond <= 0 || maxBurst <= 0) {
+			throw new IllegalArgumentException("Invalid rate: "
+					+ permitsPerSecond + "/s, burst " + maxBurst);
+		}
+		this.nanosPerPermit = NANOS_PER_SECOND / permitsPerSecond;
+		this.tolerance = (maxBurst - 1) * nanosPerPermit;
+		this.theoreticalTime = System.nanoTime();
+	}
+
+	/**
+	 * Takes a permit if one is available.
+	 * 
+	 * @return true if a permit is taken; false if the rate is exceeded
+	 */
+	public boolean tryAcquire() {
+		long now = System.nanoTime();
+		// permits are not saved up beyond the maximum burst
+		long time = theoreticalTime - now < 0 ? now : theoreticalTime;
+		if (time - now > tolerance) {
+			return false;
+		}
+		theoreticalTime = time + nanosPerPermit;
+		return true;
+	}
+
+	/**
+	 * Returns the time until the next permit is available.
+	 * 
+	 * @return the time in nanoseconds until the next permit is available, or
+	 *         0 if a permit is available now
+	 */
+	public long getNanosUntilNextPermit() {
+		return Math.max(0, theoreticalTime - System.nanoTime() - tolerance);
+	}
+
+	/**
+	 * Takes a permit, waiting until one is available.
+	 * 
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		while (!tryAcquire()) {
+			long nanos = getNanosUntilNextPermit();
+			Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+		}
+	}
+}
@@ -0,0 +1,365 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * This class is used to model an asynchronous logger of a card game server.
+ * Log records are put into a bounded queue and written by a background thread,
+ * so that logging never blocks the threads handling the messages; records
+ * are dropped (and counted) when the queue is full. Records can be written to
+ * a rolling log file and to a console, one line per record:
+ * 
+ * <pre>
+ * 2026-10-18T09:15:02.123Z INFO  [table-3] p0 (/10.0.0.7:52113) joins the game.
+ * </pre>
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class AsyncLogger {
+	/**
+	 * The default maximum number of records waiting to be written.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+	/**
+	 * The default maximum size (in bytes) of a log file before it is rolled.
+	 */
+	public static final long DEFAULT_MAX_FILE_SIZE = 16 * 1024 * 1024;
+	/**
+	 * The default number of rolled log files kept besides the current one.
+	 */
+	public static final int DEFAULT_MAX_NUM_OF_FILES = 5;
+
+	// the maximum number of records written before the outputs are flushed
+	private static final int MAX_RECORDS_PER_FLUSH = 256;
+
+	// records waiting to be written
+	private final ArrayBlockingQueue<Record> queue;
+	// enabled levels, one bit per level
+	private volatile int enabledLevels = 0;
+	// number of records dropped because the queue was full
+	private final AtomicLong numOfDroppedRecords = new AtomicLong();
+	// the console receiving each line, or null
+	private volatile Consumer<String> console = null;
+	// the current log file, or null
+	private File file = null;
+	private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+	private int maxNumOfFiles = DEFAULT_MAX_NUM_OF_FILES;
+	private Writer fileWriter = null; // writer of the current log file
+	private long fileSize = 0; // size of the current log file
+	private final Thread thread; // the thread writing the records
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates and returns an instance of the AsyncLogger class with the
+	 * default capacity, logging records of level INFO and above.
+	 */
+	public AsyncLogger() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates and returns an instance of the AsyncLogger class, logging
+	 * records of level INFO and above.
+	 * 
+	 * @param capacity
+	 *            the maximum number of records waiting to be written
+	 */
+	public AsyncLogger(int capacity) {
+		queue = new ArrayBlockingQueue<Record>(capacity);
+		setLevel(LogLevel.INFO);
+		thread = new Thread(new RecordWriter(), "async-logger");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Enables the specified level and all the levels above it, and disables
+	 * the levels below it.
+	 * 
+	 * @param level
+	 *            the least severe level to be logged
+	 */
+	public synchronized void setLevel(LogLevel level) {
+		int levels = 0;
+		for (LogLevel l : LogLevel.values()) {
+			if (l.compareTo(level) >= 0) {
+				levels |= 1 << l.ordinal();
+			}
+		}
+		enabledLevels = levels;
+	}
+
+	/**
+	 * Enables or disables the specified level.
+	 * 
+	 * @param level
+	 *            the level to be enabled or disabled
+	 * @param enabled
+	 *            true to enable the level; false to disable it
+	 */
+	public synchronized void setEnabled(LogLevel level, boolean enabled) {
+		if (enabled) {
+			enabledLevels |= 1 << level.ordinal();
+		} else {
+			enabledLevels &= ~(1 << level.ordinal());
+		}
+	}
+
+	/**
+	 * Returns true if the specified level is enabled.
+	 * 
+	 * @param level
+	 *            the level to be checked
+	 * @return true if the level is enabled; false otherwise
+	 */
+	public boolean isEnabled(LogLevel level) {
+		return (enabledLevels & (1 << level.ordinal())) != 0;
+	}
+
+	/**
+	 * Sets the console receiving each line, e.g., System.out::println. The
+	 * console is called on the thread of this logger.
+	 * 
+	 * @param console
+	 *            the console receiving each line, or null for none
+	 */
+	public void setConsole(Consumer<String> console) {
+		this.console = console;
+	}
+
+	/**
+	 * Sets the log file. Once the file reaches the maximum size, it is renamed
+	 * with the suffix ".1" (and older files with the next suffix), and a new
+	 * file is started.
+	 * 
+	 * @param file
+	 *            the log file
+	 * @param maxFileSize
+	 *            the maximum size (in bytes) of a log file
+	 * @param maxNumOfFiles
+	 *            the number of rolled log files kept besides the current one
+	 */
+	public synchronized void setLogFile(File file, long maxFileSize,
+			int maxNumOfFiles) {
+		closeFile();
+		this.file = file;
+		this.maxFileSize = maxFileSize;
+		this.maxNumOfFiles = maxNumOfFiles;
+	}
+
+	/**
+	 * Returns true if a log file has been set.
+	 * 
+	 * @return true if a log file has been set; false otherwise
+	 */
+	public synchronized boolean hasLogFile() {
+		return file != null;
+	}
+
+	/**
+	 * Returns the number of records dropped because the queue was full.
+	 * 
+	 * @return the number of records dropped
+	 */
+	public long getNumOfDroppedRecords() {
+		return numOfDroppedRecords.get();
+	}
+
+	/**
+	 * Logs the specified message if its level is enabled. This method never
+	 * blocks; the record is dropped if the queue is full.
+	 * 
+	 * @param level
+	 *            the level of the message
+	 * @param source
+	 *            the source of the message, e.g., "server" or "table-3"
+	 * @param msg
+	 *            the message
+	 */
+	public void log(LogLevel level, String source, String msg) {
+		if (!isEnabled(level) || closed) {
+			return;
+		}
+		if (!queue.offer(new Record(System.currentTimeMillis(), level,
+				source, msg))) {
+			numOfDroppedRecords.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Writes the records waiting in the queue, and stops the thread of this
+	 * logger.
+	 */
+	public void close() {
+		closed = true;
+		thread.interrupt();
+		try {
+			thread.join(5000);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Formats a record as one line.
+	 */
+	private static String format(Record record) {
+		StringBuilder line = new StringBuilder(64 + record.msg.length());
+		line.append(Instant.ofEpochMilli(record.time)).append(' ');
+		String level = record.level.name();
+		line.append(level);
+		for (int i = level.length(); i < 6; i++) {
+			line.append(' ');
+		}
+		line.append('[').append(record.source).append("] ");
+		line.append(record.msg);
+		return line.toString();
+	}
+
+	/**
+	 * Writes a line to the log file, rolling the file if it is full. Called on
+	 * the thread of this logger only.
+	 */
+	private synchronized void writeToFile(String line) throws IOException {
+		if (file == null) {
+			return;
+		}
+		if (fileWriter == null) {
+			fileSize = file.length();
+			fileWriter = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		}
+		if (fileSize > 0 && fileSize + line.length() + 1 > maxFileSize) {
+			rollFiles();
+		}
+		fileWriter.write(line);
+		fileWriter.write('\n');
+		fileSize += line.length() + 1;
+	}
+
+	/**
+	 * Renames the current and the rolled log files, and starts a new file.
+	 */
+	private void rollFiles() throws IOException {
+		closeFile();
+		String name = file.getPath();
+		new File(name + "." + maxNumOfFiles).delete();
+		for (int i = maxNumOfFiles - 1; i >= 1; i--) {
+			new File(name + "." + i).renameTo(new File(name + "." + (i + 1)));
+		}
+		if (maxNumOfFiles > 0) {
+			file.renameTo(new File(name + ".1"));
+		} else {
+			file.delete();
+		}
+		fileSize = 0;
+		fileWriter = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file, true), StandardCharsets.UTF_8));
+	}
+
+	private synchronized void flushFile() throws IOException {
+		if (fileWriter != null) {
+			fileWriter.flush();
+		}
+	}
+
+	private synchronized void closeFile() {
+		if (fileWriter != null) {
+			try {
+				fileWriter.close();
+			} catch (IOException ex) {
+				// nothing else to be done with a broken log file
+			}
+			fileWriter = null;
+		}
+	}
+
+	/**
+	 * This inner class is used to model a log record.
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private static class Record {
+		private final long time;
+		private final LogLevel level;
+		private final String source;
+		private final String msg;
+
+		private Record(long time, LogLevel level, String source, String msg) {
+			this.time = time;
+			this.level = level;
+			this.source = source;
+			this.msg = msg;
+		}
+	} // Record
+
+	/**
+	 * This inner class is used for writing the queued records in batches.
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class RecordWriter implements Runnable {
+		// implementation of method from the Runnable interface
+		public void run() {
+			ArrayList<Record> batch = new ArrayList<Record>(
+					MAX_RECORDS_PER_FLUSH);
+			long numOfDroppedReported = 0;
+			while (!closed || !queue.isEmpty()) {
+				try {
+					Record first = queue.poll(1, TimeUnit.SECONDS);
+					if (first == null) {
+						continue;
+					}
+					batch.add(first);
+					queue.drainTo(batch, MAX_RECORDS_PER_FLUSH - 1);
+				} catch (InterruptedException ex) {
+					// closing; writes what is left in the queue
+					queue.drainTo(batch);
+				}
+
+				long numOfDropped = numOfDroppedRecords.get();
+				if (numOfDropped != numOfDroppedReported) {
+					batch.add(new Record(System.currentTimeMillis(),
+							LogLevel.WARN, "logger", (numOfDropped
+									- numOfDroppedReported)
+									+ " log records dropped"));
+					numOfDroppedReported = numOfDropped;
+				}
+
+				Consumer<String> console = AsyncLogger.this.console;
+				for (Record record : batch) {
+					String line = format(record);
+					try {
+						writeToFile(line);
+					} catch (IOException ex) {
+						// loses the record rather than stopping the server
+						closeFile();
+					}
+					if (console != null) {
+						console.accept(line);
+					}
+				}
+				batch.clear();
+				try {
+					flushFile();
+				} catch (IOException ex) {
+					closeFile();
+				}
+			}
+			closeFile();
+		} // run
+	} // RecordWriter
+}
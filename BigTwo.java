@@ -3,31 +3,37 @@ import java.util.ArrayList;
 import javax.swing.JOptionPane;
 
 /**
- * this class models a big two game
+ * this class models a big two game played through a gui and a network client.
+ * the state and the rules of the game are kept by a headless BigTwoEngine,
+ * and this class updates the gui whenever the engine reports an event.
  * 
  * @author Tom Wong
  */
-public class BigTwo implements CardGame {
-    private int numOfPlayers;
-    private Deck deck;
-    private ArrayList<CardGamePlayer> playerList = new ArrayList<CardGamePlayer>();
-    private ArrayList<Hand> handsOnTable = new ArrayList<Hand>();
-    private int currentPlayerIdx;
-    private int count = 0;
+public class BigTwo implements CardGame, CardGameListener {
+    private BigTwoEngine core = new BigTwoEngine();
     private BigTwoGUI gui;
     private BigTwoClient client;
 
     /**
-     * construct a big two game
+     * construct a big two game connected to the default server
      */
     public BigTwo() {
-        for (int i = 0; i < 4; i++) {
-            CardGamePlayer player = new CardGamePlayer("");
-            playerList.add(player);
-        }
+        this(BigTwoClient.DEFAULT_SERVER_IP, BigTwoClient.DEFAULT_SERVER_PORT);
+    }
+
+    /**
+     * construct a big two game connected to the given server
+     * 
+     * @param serverIP   address of the server
+     * @param serverPort port of the server
+     */
+    public BigTwo(String serverIP, int serverPort) {
+        core.addListener(this);
 
         gui = new BigTwoGUI(this);
         client = new BigTwoClient(this, gui);
+        client.setServerIP(serverIP);
+        client.setServerPort(serverPort);
 
         client.connect();
     }
@@ -41,13 +47,22 @@ public class BigTwo implements CardGame {
         return client;
     }
 
+    /**
+     * return the headless game core
+     * 
+     * @return core
+     */
+    public BigTwoEngine getCore() {
+        return core;
+    }
+
     /**
      * get the number of players
      * 
      * @return number of players
      */
     public int getNumOfPlayers() {
-        return numOfPlayers;
+        return core.getNumOfPlayers();
     }
 
     /**
@@ -56,7 +71,7 @@ public class BigTwo implements CardGame {
      * @return the deck in the game
      */
     public Deck getDeck() {
-        return deck;
+        return core.getDeck();
     }
 
     /**
@@ -65,7 +80,7 @@ public class BigTwo implements CardGame {
      * @return the player list in the game
      */
     public ArrayList<CardGamePlayer> getPlayerList() {
-        return playerList;
+        return core.getPlayerList();
     }
 
     /**
@@ -74,7 +89,7 @@ public class BigTwo implements CardGame {
      * @return the hands on table in the game
      */
     public ArrayList<Hand> getHandsOnTable() {
-        return handsOnTable;
+        return core.getHandsOnTable();
     }
 
     /**
@@ -83,7 +98,7 @@ public class BigTwo implements CardGame {
      * @return the current player index
      */
     public int getCurrentPlayerIdx() {
-        return currentPlayerIdx;
+        return core.getCurrentPlayerIdx();
     }
 
     /**
@@ -92,53 +107,16 @@ public class BigTwo implements CardGame {
      * @param deck deck shuffled
      */
     public void start(Deck deck) {
-        gui.reset();
-        for (CardGamePlayer i : playerList) {
-            i.removeAllCards();
-        }
-
-        handsOnTable.clear();
-
-        // distribute cards, identify 3 diamond, set active player
-        for (int i = 0; i < 13; i++) {
-            Card card = deck.getCard(i);
-            playerList.get(0).addCard(card);
-            if (card.rank == 2 && card.suit == 0) {
-                currentPlayerIdx = 0;
-            }
-        }
-
-        for (int i = 13; i < 26; i++) {
-            Card card = deck.getCard(i);
-            playerList.get(1).addCard(card);
-            if (card.rank == 2 && card.suit == 0) {
-                currentPlayerIdx = 1;
-            }
-        }
-
-        for (int i = 26; i < 39; i++) {
-            Card card = deck.getCard(i);
-            playerList.get(2).addCard(card);
-            if (card.rank == 2 && card.suit == 0) {
-                currentPlayerIdx = 2;
-            }
-        }
-
-        for (int i = 39; i < 52; i++) {
-            Card card = deck.getCard(i);
-            playerList.get(3).addCard(card);
-            if (card.rank == 2 && card.suit == 0) {
-                currentPlayerIdx = 3;
-            }
-        }
+        core.start(deck);
+    }
 
-        for (CardGamePlayer player : playerList) {
-            player.sortCardsInHand();
-        }
-        gui.getLabel().setText("");
-        gui.printMsg(playerList.get(currentPlayerIdx).getName() + "'s turn: \n");
-        gui.setActivePlayer(currentPlayerIdx);
-        gui.start();
+    /**
+     * restore a game in progress after reconnecting to the server
+     * 
+     * @param snapshot the state of the table
+     */
+    public void restore(TableSnapshot snapshot) {
+        core.restore(snapshot);
     }
 
     /**
@@ -152,128 +130,81 @@ public class BigTwo implements CardGame {
     }
 
     /**
-     * make a legal move
+     * check and make the move
      * 
-     * @param hand the hand played
+     * @param playerIdx the player index
+     * @param cardIdx   the index of card selected
      */
-    public void legalMove(Hand hand) {
-        if (hand == null) {
-            this.count += 1;
-            gui.printMsg("{Pass}\n");
-        } else {
-            this.count = 0;
-            gui.setLabel(playerList.get(currentPlayerIdx).getName());
-            gui.printMsg("{" + hand.getType() + "} " + hand.toString() + "\n");
-        }
-        if (!endOfGame()) {
-            this.currentPlayerIdx = (this.currentPlayerIdx + 1) % 4;
-            gui.printMsg(playerList.get(currentPlayerIdx).getName() + "'s turn: \n");
-            gui.setActivePlayer(currentPlayerIdx);
-        }
-
-        else {
-            String message = "";
-            message += "Game ends\n";
-            for (int i = 0; i < playerList.size(); i++) {
-                int handSize = playerList.get(i).getCardsInHand().size();
-                if (handSize == 0) {
-                    message += "Player " + i + " wins the game.\n";
-                } else {
-                    message += "Player " + i + " has " + handSize + " cards in hand.\n";
-                }
-            }
-            gui.disable();
-            JOptionPane.showMessageDialog(null, message);
-            client.sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
-        }
+    public void checkMove(int playerIdx, int[] cardIdx) {
+        core.checkMove(playerIdx, cardIdx);
+    }
 
+    /**
+     * check if it is end of game
+     * 
+     * @return true if it is the end of the game. Otherwise, false
+     */
+    public boolean endOfGame() {
+        return core.endOfGame();
     }
 
     /**
-     * make an illegal move
+     * update the gui when a game starts
      */
-    public void illegalMove() {
-        gui.printMsg("Not a legal move!!!\n");
+    public void gameStarted() {
+        gui.reset();
+        gui.getLabel().setText("");
+        gui.printMsg(getPlayerList().get(getCurrentPlayerIdx()).getName() + "'s turn: \n");
+        gui.setActivePlayer(getCurrentPlayerIdx());
+        gui.start();
     }
 
     /**
-     * check and make the move
+     * update the gui after a legal move
      * 
-     * @param playerIdx the player index
-     * @param cardIdx   the index of card selected
+     * @param playerIdx the player who made the move
+     * @param hand      the hand played, or null for a pass
      */
-    public void checkMove(int playerIdx, int[] cardIdx) {
-        if (handsOnTable.isEmpty()) {
-            if (cardIdx == null) {
-                this.illegalMove();
-            } else {
-                CardGamePlayer activePlayer = playerList.get(playerIdx);
-                CardList cardSelected = activePlayer.play(cardIdx);
-                Card card = new Card(0, 2);
-                Hand hand = composeHand(activePlayer, cardSelected);
-                if (hand != null && hand.contains(card)) {
-                    activePlayer.removeCards(hand);
-                    handsOnTable.add(hand);
-                    this.legalMove(hand);
-                } else {
-                    this.illegalMove();
-                }
-            }
+    public void legalMove(int playerIdx, Hand hand) {
+        if (hand == null) {
+            gui.printMsg("{Pass}\n");
         } else {
-            if (cardIdx == null) {
-                if (count > 2) {
-                    this.illegalMove();
-                } else {
-                    this.legalMove(null);
-                }
-            } else {
-                CardGamePlayer activePlayer = playerList.get(currentPlayerIdx);
-                CardList cardSelected = activePlayer.play(cardIdx);
-                Hand hand = composeHand(activePlayer, cardSelected);
-                if (hand == null) {
-                    this.illegalMove();
-                }
-
-                else {
-                    if (count == 3) {
-                        activePlayer.removeCards(hand);
-                        handsOnTable.add(hand);
-                        this.legalMove(hand);
-                    }
-
-                    else {
-                        Hand lasthand = handsOnTable.get(handsOnTable.size() - 1);
-                        if (lasthand.size() != hand.size()) {
-                            this.illegalMove();
-                        } else {
-                            if (hand.beats(lasthand)) {
-                                activePlayer.removeCards(hand);
-                                handsOnTable.add(hand);
-                                this.legalMove(hand);
-                            } else {
-                                this.illegalMove();
-                            }
-                        }
-                    }
-                }
-
-            }
-
+            gui.setLabel(getPlayerList().get(playerIdx).getName());
+            gui.printMsg("{" + hand.getType() + "} " + hand.toString() + "\n");
+        }
+        if (!endOfGame()) {
+            gui.printMsg(getPlayerList().get(getCurrentPlayerIdx()).getName() + "'s turn: \n");
+            gui.setActivePlayer(getCurrentPlayerIdx());
         }
     }
 
     /**
-     * check if it is end of game
+     * update the gui after an illegal move
      * 
-     * @return true if it is the end of the game. Otherwise, false
+     * @param playerIdx the player who tried the move
+     * @param cardIdx   the index of cards tried
      */
-    public boolean endOfGame() {
-        for (CardGamePlayer player : playerList) {
-            if (player.getCardsInHand().isEmpty()) {
-                return true;
+    public void illegalMove(int playerIdx, int[] cardIdx) {
+        gui.printMsg("Not a legal move!!!\n");
+    }
+
+    /**
+     * show the result when the game ends
+     */
+    public void gameEnded() {
+        String message = "";
+        message += "Game ends\n";
+        for (int i = 0; i < getPlayerList().size(); i++) {
+            int handSize = getPlayerList().get(i).getCardsInHand().size();
+            if (handSize == 0) {
+                message += "Player " + i + " wins the game.\n";
+            } else {
+                message += "Player " + i + " has " + handSize + " cards in hand.\n";
             }
         }
-        return false;
+        gui.disable();
+        JOptionPane.showMessageDialog(null, message);
+        client.sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
     }
 
     /**
@@ -284,51 +215,18 @@ public class BigTwo implements CardGame {
      * @return a legal hand
      */
     public static Hand composeHand(CardGamePlayer player, CardList cards) {
-        Hand hand;
-        hand = new StraightFlush(player, cards);
-        if (hand.isValid()) {
-            return hand;
-        }
-        hand = new Quad(player, cards);
-        if (hand.isValid()) {
-            return hand;
-        }
-        hand = new FullHouse(player, cards);
-        if (hand.isValid()) {
-            return hand;
-        }
-        hand = new Flush(player, cards);
-        if (hand.isValid()) {
-            return hand;
-        }
-        hand = new Straight(player, cards);
-        if (hand.isValid()) {
-            return hand;
-        }
-        hand = new Triple(player, cards);
-        if (hand.isValid()) {
-            return hand;
-        }
-        hand = new Pair(player, cards);
-        if (hand.isValid()) {
-            return hand;
-        }
-        hand = new Single(player, cards);
-        if (hand.isValid()) {
-            return hand;
-        }
-
-        else {
-            return null;
-        }
+        return BigTwoEngine.composeHand(player, cards);
     }
 
     /**
      * main to run the game
      * 
-     * @param args not used
+     * @param args optional address and port of the server (127.0.0.1 and 2396
+     *             by default)
      */
     public static void main(String[] args) {
-        BigTwo game = new BigTwo();
+        String serverIP = args.length > 0 ? args[0] : BigTwoClient.DEFAULT_SERVER_IP;
+        int serverPort = args.length > 1 ? Integer.parseInt(args[1]) : BigTwoClient.DEFAULT_SERVER_PORT;
+        BigTwo game = new BigTwo(serverIP, serverPort);
     }
 }
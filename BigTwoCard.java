@@ -1,19 +1,63 @@
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+
 /**
- * This class is used for modeling the BigTwoCard in BigTwo card game.
+ * This class is used for modeling the BigTwoCard in BigTwo card game. There is
+ * only one instance of each card, which is returned by valueOf().
  * 
  * @author Tom Wong
  */
 public class BigTwoCard extends Card {
+    private static final long serialVersionUID = -6882428045893598171L;
+
+    // the instances of the cards, indexed by their ids
+    private static final BigTwoCard[] CARDS = new BigTwoCard[52];
+    // the order of the cards in big two, indexed by their ids
+    private static final int[] BIG_TWO_ORDER = new int[52];
+
+    static {
+        for (int id = 0; id < CARDS.length; id++) {
+            CARDS[id] = new BigTwoCard(id / 13, id % 13);
+            BIG_TWO_ORDER[id] = CardSet.indexOf(id / 13, id % 13);
+        }
+    }
+
     /**
-     * creates and returns an instance of the BigTwoCard
+     * creates an instance of the BigTwoCard
      * 
      * @param suit the suit of a card
      * @param rank the rank of a card
      */
-    public BigTwoCard(int suit, int rank) {
+    private BigTwoCard(int suit, int rank) {
         super(suit, rank);
     }
 
+    /**
+     * returns the instance of the BigTwoCard with the specified suit and rank
+     * 
+     * @param suit the suit of a card
+     * @param rank the rank of a card
+     * @return the card
+     * @throws IllegalArgumentException if the suit or the rank is out of range
+     */
+    public static BigTwoCard valueOf(int suit, int rank) {
+        return CARDS[getId(suit, rank)];
+    }
+
+    /**
+     * replaces a deserialized card by the instance of the card
+     * 
+     * @return the instance of the card
+     * @throws ObjectStreamException if the suit or the rank is out of range
+     */
+    protected Object readResolve() throws ObjectStreamException {
+        try {
+            return valueOf(this.suit, this.rank);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidObjectException(ex.getMessage());
+        }
+    }
+
     /**
      * define the compare order in big two
      * 
@@ -21,30 +65,6 @@ public class BigTwoCard extends Card {
      * @return a negative integer, zero, or a positive integer as this card is less than, equal to, or greater than the specified card
      */
     public int compareTo(Card card) {
-        int newRank;
-        int cardRank;
-        if (this.rank == 0 || this.rank == 1) {
-            newRank = this.rank + 13;
-        } else {
-            newRank = this.rank;
-        }
-
-        if (card.rank == 0 || card.rank == 1) {
-            cardRank = card.rank + 13;
-        } else {
-            cardRank = card.rank;
-        }
-
-        if (newRank > cardRank) {
-            return 1;
-        } else if (newRank < cardRank) {
-            return -1;
-        } else if (this.suit > card.suit) {
-            return 1;
-        } else if (this.suit < card.suit) {
-            return -1;
-        } else {
-            return 0;
-        }
+        return BIG_TWO_ORDER[this.getId()] - BIG_TWO_ORDER[card.getId()];
     }
-}
\ No newline at end of file
+}
@@ -1,4 +1,7 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
@@ -12,14 +15,46 @@ import java.net.Socket;
  * @author tom
  */
 public class BigTwoClient implements NetworkGame {
+    /**
+     * the default number of messages written between two resets of the
+     * java serialization stream
+     */
+    public static final int DEFAULT_STREAM_RESET_INTERVAL = 32;
+    /**
+     * the number of attempts to reconnect after losing the connection
+     */
+    public static final int MAX_RECONNECT_ATTEMPTS = 10;
+    /**
+     * the time (in milliseconds) between two attempts to reconnect
+     */
+    public static final int RECONNECT_DELAY = 3000;
+    /**
+     * the default address of the server
+     */
+    public static final String DEFAULT_SERVER_IP = "127.0.0.1";
+    /**
+     * the default port of the server
+     */
+    public static final int DEFAULT_SERVER_PORT = 2396;
+
     private BigTwo game;
     private BigTwoGUI gui;
     private Socket sock;
     private ObjectOutputStream oos;
+    private BufferedOutputStream bos; // used with the binary protocol
+    private DataInputStream dis; // used with the binary protocol
+    private BinaryMessageCodec codec; // null if the server only speaks java serialization
+    private int streamResetInterval = DEFAULT_STREAM_RESET_INTERVAL;
+    private int numOfMessagesSinceReset = 0;
+    private String sessionToken; // issued by the server when joining, used to resume the seat
+    private boolean resuming = false; // true while waiting for the answer to a RESUME
+    private GameMessage pendingPlayerList; // player list received while resuming
+    private int version = 0; // version of the table known to this client, 0 if unknown
+    private boolean syncing = false; // true while waiting for the answer to a SYNC
     private int playerID;
     private String playerName;
-    private String serverIP;
-    private int serverPort;
+    private String serverIP = DEFAULT_SERVER_IP;
+    private int serverPort = DEFAULT_SERVER_PORT;
 
     /**
      * initialize the client by game and gui
@@ -102,21 +137,154 @@ public class BigTwoClient implements NetworkGame {
         this.serverPort = serverPort;
     }
 
+    /**
+     * set how often the java serialization stream is reset. without a reset
+     * the stream (and the one reading it on the server) keeps every message
+     * ever sent, so memory grows with the length of the session.
+     * 
+     * @param streamResetInterval number of messages between two resets (1 to
+     *                            reset after every message)
+     */
+    public void setStreamResetInterval(int streamResetInterval) {
+        this.streamResetInterval = Math.max(1, streamResetInterval);
+    }
+
     /**
      * connect the game
      */
     @Override
     public synchronized void connect() {
+        open();
+        startReading();
+    }
+
+    /**
+     * open the connection to the server
+     * 
+     * @return true if the connection is opened
+     */
+    private boolean open() {
         try {
-            sock = new Socket("127.0.0.1", 2396);
-            oos = new ObjectOutputStream(sock.getOutputStream());
+            // asks for the binary protocol first
+            sock = new Socket(serverIP, serverPort);
+            bos = new BufferedOutputStream(sock.getOutputStream());
+            bos.write(BinaryMessageCodec.hello(BinaryMessageCodec.VERSION));
+            bos.flush();
+            dis = new DataInputStream(new BufferedInputStream(sock.getInputStream()));
+            if (BinaryMessageCodec.readHelloAnswer(dis) > 0) {
+                codec = new BinaryMessageCodec();
+            } else {
+                // an old server, which starts with a serialization stream
+                // header instead, so reconnect using java serialization
+                sock.close();
+                codec = null;
+                sock = new Socket(serverIP, serverPort);
+                oos = new ObjectOutputStream(sock.getOutputStream());
+                numOfMessagesSinceReset = 0;
+            }
+            return true;
         } catch (Exception ex) {
             ex.printStackTrace();
+            return false;
         }
+    }
 
+    /**
+     * start the thread reading the messages from the server, after asking
+     * the server to resume the seat if the client holds a session token
+     */
+    private void startReading() {
+        version = 0;
+        syncing = false;
+        if (sessionToken != null) {
+            resuming = true;
+            pendingPlayerList = null;
+            sendMessage(new CardGameMessage(CardGameMessage.RESUME, -1, sessionToken));
+        }
         Thread readerThread = new Thread(new ServerHandler());
         readerThread.start();
+    }
+
+    /**
+     * try to reconnect after losing the connection in the middle of a game,
+     * so that the server gives the seat back to this client
+     * 
+     * @return true if reconnected
+     */
+    private boolean reconnect() {
+        gui.disable();
+        gui.printMsg("Connection lost, reconnecting...\n");
+        for (int i = 0; i < MAX_RECONNECT_ATTEMPTS; i++) {
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+            } catch (InterruptedException e) {
+                return false;
+            }
+            synchronized (this) {
+                if (open()) {
+                    startReading();
+                    return true;
+                }
+            }
+        }
+        sessionToken = null;
+        return false;
+    }
+
+    /**
+     * remove the cards of every player and the hands on table
+     */
+    private void clearTable() {
+        for (CardGamePlayer i : game.getPlayerList()) {
+            i.removeAllCards();
+        }
+        game.getHandsOnTable().clear();
+        gui.getLabel().setText("");
+        gui.repaint();
+    }
 
+    /**
+     * restore the table from a snapshot sent by the server
+     * 
+     * @param snapshot the state of the table
+     */
+    private void restoreTable(TableSnapshot snapshot) {
+        version = snapshot.getVersion();
+        String[] playerNames = snapshot.getPlayerNames();
+        for (int i = 0; i < playerNames.length; i++) {
+            game.getPlayerList().get(i).setName(playerNames[i] == null ? "" : playerNames[i]);
+        }
+        gui.addPlayer();
+        game.restore(snapshot);
+        if (snapshot.getLastHandPlayerIdx() >= 0) {
+            gui.setLabel(playerNames[snapshot.getLastHandPlayerIdx()]);
+        }
+    }
+
+    /**
+     * check the sequence number of a state change of the table, and ask the
+     * server for a snapshot if a state change has been missed
+     * 
+     * @param message the message
+     * @return true if the message is to be handled, false if it is already
+     *         covered by a snapshot on its way
+     */
+    private boolean checkSequence(GameMessage message) {
+        int sequence = ((CardGameMessage) message).getSequence();
+        if (sequence == 0 || message.getType() == CardGameMessage.PLAYER_LIST) {
+            return true;
+        }
+        if (syncing) {
+            return false;
+        }
+        if (version > 0 && sequence != version + 1) {
+            // catches up in one round trip rather than replaying the game
+            syncing = true;
+            sendMessage(new CardGameMessage(CardGameMessage.SYNC, -1, null));
+            return false;
+        }
+        version = sequence;
+        return true;
     }
 
     /**
@@ -124,7 +292,18 @@ public class BigTwoClient implements NetworkGame {
      */
     @Override
     public synchronized void parseMessage(GameMessage message) {
+        if (message.getType() == CardGameMessage.PLAYER_LIST && resuming) {
+            // the seat is given back by the answer to the RESUME instead
+            pendingPlayerList = message;
+            return;
+        }
+
+        if (!checkSequence(message)) {
+            return;
+        }
+
         if (message.getType() == CardGameMessage.PLAYER_LIST) {
+            version = ((CardGameMessage) message).getSequence();
             this.playerID = message.getPlayerID();
             String[] playerNames = (String[]) message.getData();
             for (int i = 0; i < playerNames.length; i++) {
@@ -147,7 +326,7 @@ public class BigTwoClient implements NetworkGame {
             gui.start();
             gui.repaint();
             if (this.playerID == playerID) {
-                gui.printMsg("Connected to /127.0.0.1:2396\n");
+                gui.printMsg("Connected to /" + serverIP + ":" + serverPort + "\n");
                 sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
             }
         }
@@ -178,13 +357,7 @@ public class BigTwoClient implements NetworkGame {
                 gui.player4.removeAll();
             }
 
-            for (CardGamePlayer i : game.getPlayerList()) {
-                i.removeAllCards();
-            }
-            game.getHandsOnTable().clear();
-            gui.getLabel().setText("");
-            ;
-            gui.repaint();
+            clearTable();
 
             gui.disable();
             sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
@@ -195,7 +368,12 @@ public class BigTwoClient implements NetworkGame {
         }
 
         if (message.getType() == CardGameMessage.START) {
-            game.start((BigTwoDeck) message.getData());
+            // rebuilds the deck from the seed, unless the server sent the deck itself
+            if (message.getData() instanceof DealSeed) {
+                game.start(((DealSeed) message.getData()).deal(new BigTwoDeck()));
+            } else {
+                game.start((BigTwoDeck) message.getData());
+            }
             gui.repaint();
         }
 
@@ -208,6 +386,61 @@ public class BigTwoClient implements NetworkGame {
             gui.printChat((String) message.getData() + "\n");
         }
 
+        if (message.getType() == CardGameMessage.SESSION) {
+            sessionToken = (String) message.getData();
+        }
+
+        if (message.getType() == CardGameMessage.RESUME) {
+            resuming = false;
+            if (message.getData() instanceof TableSnapshot) {
+                // back in the old seat, with the game as it is now
+                TableSnapshot snapshot = (TableSnapshot) message.getData();
+                pendingPlayerList = null;
+                this.playerID = message.getPlayerID();
+                restoreTable(snapshot);
+                gui.printMsg("Resumed the game\n");
+                gui.repaint();
+                if (!snapshot.isInProgress()) {
+                    // the game ended while this client was away
+                    gui.disable();
+                    sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
+                }
+            } else {
+                // the seat is gone, so join the table given by the server
+                sessionToken = null;
+                clearTable();
+                gui.printMsg("Cannot resume the game\n");
+                if (pendingPlayerList != null) {
+                    GameMessage playerList = pendingPlayerList;
+                    pendingPlayerList = null;
+                    parseMessage(playerList);
+                }
+            }
+        }
+
+        if (message.getType() == CardGameMessage.SYNC) {
+            syncing = false;
+            if (message.getData() instanceof TableSnapshot) {
+                TableSnapshot snapshot = (TableSnapshot) message.getData();
+                boolean wasInProgress = game.getCore().isInProgress();
+                restoreTable(snapshot);
+                gui.repaint();
+                if (wasInProgress && !snapshot.isInProgress()) {
+                    // the end of the game is among the missed state changes
+                    gui.disable();
+                    sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
+                }
+            } else {
+                // the server cannot take snapshots, so carry on from here
+                version = 0;
+            }
+        }
+
+        if (message.getType() == CardGameMessage.PING) {
+            // tells the server that this client is still alive
+            sendMessage(new CardGameMessage(CardGameMessage.PONG, -1, null));
+        }
+
     }
 
     /**
@@ -216,8 +449,18 @@ public class BigTwoClient implements NetworkGame {
     @Override
     public synchronized void sendMessage(GameMessage message) {
         try {
-            oos.writeObject(message);
-            oos.flush();
+            if (codec != null) {
+                codec.writeMessage(bos, (CardGameMessage) message);
+                bos.flush();
+            } else {
+                oos.writeObject(message);
+                // clears the handle table of the stream now and then
+                if (++numOfMessagesSinceReset >= streamResetInterval) {
+                    oos.reset();
+                    numOfMessagesSinceReset = 0;
+                }
+                oos.flush();
+            }
         } catch (IOException e) {
 
             e.printStackTrace();
@@ -237,7 +480,9 @@ public class BigTwoClient implements NetworkGame {
          */
         public ServerHandler() {
             try {
-                ois = new ObjectInputStream(sock.getInputStream());
+                if (codec == null) {
+                    ois = new ObjectInputStream(sock.getInputStream());
+                }
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -250,10 +495,14 @@ public class BigTwoClient implements NetworkGame {
             CardGameMessage message;
             try {
                 // reads incoming messages from the server
-                while ((message = (CardGameMessage) ois.readObject()) != null) {
+                while ((message = codec != null ? codec.readMessage(dis)
+                        : (CardGameMessage) ois.readObject()) != null) {
                     parseMessage(message);
                 }
             } catch (Exception ex) {
+                if (sessionToken != null && reconnect()) {
+                    return;
+                }
                 gui.start();
                 gui.disable();
                 for (CardGamePlayer i : game.getPlayerList()) {
@@ -0,0 +1,291 @@
+import java.util.ArrayList;
+
+/**
+ * This class is used to model the state and the rules of a Big Two card game,
+ * without any user interface or network connection. It is driven by the
+ * events of the game (a deal and the moves of the players), and tells its
+ * listeners about the outcome of each event. It is used by a Big Two server to
+ * validate the moves of the players and by a Big Two client as its game core,
+ * so that both agree on every move.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class BigTwoEngine implements CardGame, CardGameRules {
+	// the number of players in a Big Two card game
+	private static final int NUM_OF_PLAYERS = 4;
+	// the card which the first hand of a game must contain (the 3 of Diamonds)
+	private static final Card THREE_OF_DIAMONDS = Card.valueOf(0, 2);
+
+	private Deck deck = null; // the deck of the current game
+	// the players of the game
+	private final ArrayList<CardGamePlayer> playerList = new ArrayList<CardGamePlayer>();
+	// the hands played on the table
+	private final ArrayList<Hand> handsOnTable = new ArrayList<Hand>();
+	private int currentPlayerIdx = -1; // the index of the active player
+	private int numOfPasses = 0; // the number of passes in a row
+	private boolean inProgress = false; // whether a game is in progress
+	// the listeners of the events of the game
+	private final ArrayList<CardGameListener> listeners = new ArrayList<CardGameListener>();
+
+	/**
+	 * Creates and returns an instance of the BigTwoEngine class.
+	 */
+	public BigTwoEngine() {
+		for (int i = 0; i < NUM_OF_PLAYERS; i++) {
+			playerList.add(new CardGamePlayer(""));
+		}
+	}
+
+	/**
+	 * Adds a listener of the events of the game.
+	 * 
+	 * @param listener
+	 *            the listener to be added
+	 */
+	public void addListener(CardGameListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener of the events of the game.
+	 * 
+	 * @param listener
+	 *            the listener to be removed
+	 */
+	public void removeListener(CardGameListener listener) {
+		listeners.remove(listener);
+	}
+
+	public int getNumOfPlayers() {
+		return NUM_OF_PLAYERS;
+	}
+
+	public Deck getDeck() {
+		return deck;
+	}
+
+	public ArrayList<CardGamePlayer> getPlayerList() {
+		return playerList;
+	}
+
+	public ArrayList<Hand> getHandsOnTable() {
+		return handsOnTable;
+	}
+
+	public int getCurrentPlayerIdx() {
+		return currentPlayerIdx;
+	}
+
+	public boolean isInProgress() {
+		return inProgress;
+	}
+
+	public void start(Deck deck) {
+		this.deck = deck;
+		for (CardGamePlayer player : playerList) {
+			player.removeAllCards();
+		}
+		handsOnTable.clear();
+		numOfPasses = 0;
+
+		// distributes the cards and finds the holder of the 3 of Diamonds
+		for (int i = 0; i < deck.size(); i++) {
+			Card card = deck.getCard(i);
+			int playerIdx = i / 13;
+			playerList.get(playerIdx).addCard(card);
+			if (card.equals(THREE_OF_DIAMONDS)) {
+				currentPlayerIdx = playerIdx;
+			}
+		}
+		for (CardGamePlayer player : playerList) {
+			player.sortCardsInHand();
+		}
+		inProgress = true;
+		for (CardGameListener listener : listeners) {
+			listener.gameStarted();
+		}
+	} // start
+
+	public void stop() {
+		inProgress = false;
+	}
+
+	public TableSnapshot getSnapshot(int version, String[] playerNames) {
+		int[][] hands = new int[NUM_OF_PLAYERS][];
+		for (int i = 0; i < NUM_OF_PLAYERS; i++) {
+			hands[i] = TableSnapshot.getCardIDs(playerList.get(i)
+					.getCardsInHand());
+		}
+		int lastHandPlayerIdx = -1;
+		int[] lastHand = null;
+		if (!handsOnTable.isEmpty()) {
+			Hand hand = handsOnTable.get(handsOnTable.size() - 1);
+			lastHandPlayerIdx = playerList.indexOf(hand.getPlayer());
+			lastHand = TableSnapshot.getCardIDs(hand);
+		}
+		return new TableSnapshot(version, playerNames, inProgress,
+				currentPlayerIdx, numOfPasses, hands, lastHandPlayerIdx, lastHand);
+	} // getSnapshot
+
+	/**
+	 * Restores the state of a game from the specified snapshot, e.g., when a
+	 * client resumes its seat after losing its connection. The cards are
+	 * restored in the order in which they are held, so that the indices of
+	 * later moves refer to the same cards. The listeners are told that a game
+	 * has started if the game is in progress.
+	 * 
+	 * @param snapshot
+	 *            the snapshot of the game
+	 */
+	public void restore(TableSnapshot snapshot) {
+		deck = null;
+		int[][] hands = snapshot.getHands();
+		for (int i = 0; i < NUM_OF_PLAYERS; i++) {
+			CardGamePlayer player = playerList.get(i);
+			player.removeAllCards();
+			for (int id : hands[i]) {
+				player.addCard(BigTwoCard.valueOf(id / 13, id % 13));
+			}
+		}
+		handsOnTable.clear();
+		if (snapshot.getLastHand() != null) {
+			CardList cards = new CardList();
+			for (int id : snapshot.getLastHand()) {
+				cards.addCard(BigTwoCard.valueOf(id / 13, id % 13));
+			}
+			handsOnTable.add(composeHand(
+					playerList.get(snapshot.getLastHandPlayerIdx()), cards));
+		}
+		currentPlayerIdx = snapshot.getCurrentPlayerIdx();
+		numOfPasses = snapshot.getNumOfPasses();
+		inProgress = snapshot.isInProgress();
+		if (inProgress) {
+			for (CardGameListener listener : listeners) {
+				listener.gameStarted();
+			}
+		}
+	} // restore
+
+	public void makeMove(int playerIdx, int[] cardIdx) {
+		checkMove(playerIdx, cardIdx);
+	}
+
+	public void checkMove(int playerIdx, int[] cardIdx) {
+		acceptMove(playerIdx, cardIdx);
+	}
+
+	public boolean acceptMove(int playerIdx, int[] cardIdx) {
+		Hand hand = null;
+		if (!inProgress || playerIdx != currentPlayerIdx
+				|| !isWellFormed(cardIdx)) {
+			return rejectMove(playerIdx, cardIdx);
+		}
+
+		CardGamePlayer activePlayer = playerList.get(playerIdx);
+		if (cardIdx == null) {
+			// the first hand cannot be passed, nor can everyone else pass
+			if (handsOnTable.isEmpty() || numOfPasses > 2) {
+				return rejectMove(playerIdx, cardIdx);
+			}
+			numOfPasses++;
+		} else {
+			hand = composeHand(activePlayer, activePlayer.play(cardIdx));
+			if (hand == null) {
+				return rejectMove(playerIdx, cardIdx);
+			}
+			if (handsOnTable.isEmpty()) {
+				// the first hand must contain the 3 of Diamonds
+				if (!hand.contains(THREE_OF_DIAMONDS)) {
+					return rejectMove(playerIdx, cardIdx);
+				}
+			} else if (numOfPasses < 3) {
+				// the hand must beat the last hand, unless everyone else
+				// passed
+				Hand lastHand = handsOnTable.get(handsOnTable.size() - 1);
+				if (lastHand.size() != hand.size() || !hand.beats(lastHand)) {
+					return rejectMove(playerIdx, cardIdx);
+				}
+			}
+			activePlayer.removeCards(hand);
+			handsOnTable.add(hand);
+			numOfPasses = 0;
+		}
+
+		if (endOfGame()) {
+			inProgress = false;
+		} else {
+			currentPlayerIdx = (currentPlayerIdx + 1) % NUM_OF_PLAYERS;
+		}
+		for (CardGameListener listener : listeners) {
+			listener.legalMove(playerIdx, hand);
+		}
+		if (!inProgress) {
+			for (CardGameListener listener : listeners) {
+				listener.gameEnded();
+			}
+		}
+		return true;
+	} // acceptMove
+
+	public boolean endOfGame() {
+		for (CardGamePlayer player : playerList) {
+			if (player.getCardsInHand().isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the hand of the highest category which the specified cards make.
+	 * 
+	 * @param player
+	 *            the player who plays the cards
+	 * @param cards
+	 *            the cards played
+	 * @return the hand which the cards make, or null if they do not make a
+	 *         valid hand
+	 */
+	public static Hand composeHand(CardGamePlayer player, CardList cards) {
+		long set = cards.getMask();
+		if (CardSet.size(set) != cards.size()) {
+			// the same card played twice
+			return null;
+		}
+		// classifies the cards first, so that only the hand they make is
+		// created
+		return HandClassifier.createHand(HandClassifier.classify(set), player,
+				cards);
+	} // composeHand
+
+	/**
+	 * Tells the listeners about an illegal move, and returns false.
+	 */
+	private boolean rejectMove(int playerIdx, int[] cardIdx) {
+		for (CardGameListener listener : listeners) {
+			listener.illegalMove(playerIdx, cardIdx);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the specified card indices are distinct and within the
+	 * hand of the active player; a move sent by a client running BigTwoGUI
+	 * always is.
+	 */
+	private boolean isWellFormed(int[] cardIdx) {
+		if (cardIdx == null) {
+			return true;
+		}
+		int numOfCards = playerList.get(currentPlayerIdx).getNumOfCards();
+		long seen = 0;
+		for (int idx : cardIdx) {
+			if (idx < 0 || idx >= numOfCards || (seen & (1L << idx)) != 0) {
+				return false;
+			}
+			seen |= 1L << idx;
+		}
+		return cardIdx.length > 0;
+	} // isWellFormed
+}
@@ -1,14 +1,32 @@
+import java.io.File;
+
 /**
  * This class is used to model a Big Two card game server.
  * @author Kenneth Wong
  *
  */
 public class BigTwoServer extends CardGameServer {
+	/**
+	 * The default maximum number of tables hosted by a Big Two server.
+	 */
+	public static final int DEFAULT_MAX_NUM_OF_TABLES = 256;
+
 	/**
 	 * Creates and returns an instance of the BigTwoServer class.
 	 */
 	public BigTwoServer() {
-		super("Big Two Server", 4);
+		this(DEFAULT_MAX_NUM_OF_TABLES);
+	}
+
+	/**
+	 * Creates and returns an instance of the BigTwoServer class.
+	 * 
+	 * @param maxNumOfTables
+	 *            the maximum number of tables (i.e., concurrent games) hosted
+	 *            by this server
+	 */
+	public BigTwoServer(int maxNumOfTables) {
+		super("Big Two Server", 4, maxNumOfTables);
 	}
 	
 	/**
@@ -18,20 +36,113 @@ public class BigTwoServer extends CardGameServer {
 	public Deck createDeck() {
 		return new BigTwoDeck(); 
 	}
+
+	/**
+	 * Creates and returns an instance of the BigTwoEngine class, which
+	 * validates the moves of the players.
+	 * @return an instance of the BigTwoEngine class
+	 */
+	public CardGameRules createRules() {
+		return new BigTwoEngine();
+	}
 	
 	/**
 	 * main() method for starting the server.
 	 * 
 	 * @param args
-	 *            the port to be used by the server. The default port 5000 will
-	 *            be used if no arguments has been supplied
+	 *            the port to be used by the server, optionally followed by
+	 *            "--nio [numOfIoThreads]" to use the non-blocking transport or
+	 *            "--virtual" to serve the blocking connections on virtual
+	 *            threads, "--tables numOfTables" to limit the number of
+	 *            concurrent games, "--headless" to run without a GUI,
+	 *            "--log file" to log to a rolling log file, "--log-level
+	 *            level" to choose the least severe level logged (DEBUG, INFO,
+	 *            WARN or ERROR), "--metrics-port port" to serve the metrics
+	 *            at http://localhost:port/metrics, "--backlog n" to queue up
+	 *            to n pending connections, "--accept-rate n" to accept at
+	 *            most n connections per second, "--heartbeat seconds" to PING
+	 *            a client silent for that long (0 to disable) and disconnect
+	 *            it after three times as long, "--grace seconds" to hold the
+	 *            seat of a disconnected player for that long (0 to disable),
+	 *            "--spectators n" to let up to n spectators watch each table
+	 *            and "--spectator-delay seconds" to show the game to the
+	 *            spectators that much later. The default port 2396 will be
+	 *            used if no port has been supplied
 	 */
 	public static void main(String[] args) {
-		BigTwoServer server = new BigTwoServer();
-		if (args.length > 0) {
-			server.start(Integer.parseInt(args[0]));
+		int port = 2396;
+		int numOfIoThreads = 0;
+		boolean useVirtualThreads = false;
+		int maxNumOfTables = DEFAULT_MAX_NUM_OF_TABLES;
+		boolean headless = false;
+		String logFile = null;
+		LogLevel logLevel = LogLevel.INFO;
+		int metricsPort = -1;
+		int acceptBacklog = CardGameServer.DEFAULT_ACCEPT_BACKLOG;
+		int maxAcceptRate = 0;
+		long heartbeatInterval = CardGameServer.DEFAULT_HEARTBEAT_INTERVAL;
+		long sessionGracePeriod = CardGameServer.DEFAULT_SESSION_GRACE_PERIOD;
+		int maxNumOfSpectators = CardGameServer.DEFAULT_MAX_NUM_OF_SPECTATORS;
+		long spectatorDelay = 0;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--nio")) {
+				numOfIoThreads = Math.min(4, Runtime.getRuntime()
+						.availableProcessors());
+				if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+					numOfIoThreads = Integer.parseInt(args[++i]);
+				}
+			} else if (args[i].equals("--virtual")) {
+				useVirtualThreads = true;
+			} else if (args[i].equals("--tables") && i + 1 < args.length) {
+				maxNumOfTables = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--headless")) {
+				headless = true;
+			} else if (args[i].equals("--log") && i + 1 < args.length) {
+				logFile = args[++i];
+			} else if (args[i].equals("--log-level") && i + 1 < args.length) {
+				logLevel = LogLevel.valueOf(args[++i].toUpperCase());
+			} else if (args[i].equals("--metrics-port") && i + 1 < args.length) {
+				metricsPort = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--backlog") && i + 1 < args.length) {
+				acceptBacklog = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--accept-rate") && i + 1 < args.length) {
+				maxAcceptRate = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--heartbeat") && i + 1 < args.length) {
+				heartbeatInterval = Long.parseLong(args[++i]) * 1000;
+			} else if (args[i].equals("--grace") && i + 1 < args.length) {
+				sessionGracePeriod = Long.parseLong(args[++i]) * 1000;
+			} else if (args[i].equals("--spectators") && i + 1 < args.length) {
+				maxNumOfSpectators = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--spectator-delay")
+					&& i + 1 < args.length) {
+				spectatorDelay = Long.parseLong(args[++i]) * 1000;
+			} else {
+				port = Integer.parseInt(args[i]);
+			}
+		}
+
+		BigTwoServer server = new BigTwoServer(maxNumOfTables);
+		server.setUseVirtualThreads(useVirtualThreads);
+		if (headless) {
+			server.setHeadless(true);
+		}
+		if (logFile != null) {
+			server.getLogger().setLogFile(new File(logFile),
+					AsyncLogger.DEFAULT_MAX_FILE_SIZE,
+					AsyncLogger.DEFAULT_MAX_NUM_OF_FILES);
+		}
+		server.getLogger().setLevel(logLevel);
+		server.setMetricsPort(metricsPort);
+		server.setAcceptBacklog(acceptBacklog);
+		server.setMaxAcceptRate(maxAcceptRate, maxAcceptRate);
+		server.setHeartbeat(heartbeatInterval, heartbeatInterval * 3);
+		server.setSessionGracePeriod(sessionGracePeriod);
+		server.setMaxNumOfSpectators(maxNumOfSpectators);
+		server.setSpectatorDelay(spectatorDelay);
+		if (numOfIoThreads > 0) {
+			server.startNonBlocking(port, numOfIoThreads);
 		} else {
-			server.start(2396);
+			server.start(port);
 		}
 	} // main
 }
@@ -0,0 +1,531 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class is used to model a compact binary codec for card game messages.
+ * <p>
+ * A frame is a 2-byte length (of the rest of the frame), a 1-byte message
+ * type, a 1-byte playerID and a payload depending on the type: strings are a
+ * 2-byte length (-1 for null) followed by UTF-8 bytes, cards are one byte
+ * (suit * 13 + rank), the seed of a deal is a 1-byte algorithm ID and an
+ * 8-byte seed, and the indices of the cards of a move are a 13-bit mask (0
+ * for a pass). A hand hidden from spectators is a count with its top bit set
+ * and no cards. A message changing the state of a table ends with its 4-byte
+ * sequence number, which older decoders skip as they ignore the rest of a
+ * frame.
+ * <p>
+ * A client asks for this codec by sending the 3-byte hello (the magic "B2"
+ * and the highest version it speaks) as the first bytes of the connection; the
+ * server answers with the magic and the version to be used. Clients using
+ * Java serialization start with the magic of a serialization stream instead,
+ * which lets the server tell the two apart.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public class BinaryMessageCodec implements MessageCodec {
+	/**
+	 * The first byte of the magic of the handshake.
+	 */
+	public static final byte MAGIC_0 = 'B';
+	/**
+	 * The second byte of the magic of the handshake.
+	 */
+	public static final byte MAGIC_1 = '2';
+	/**
+	 * The highest version of the binary protocol supported by this codec.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * The length of the hello (and of its answer).
+	 */
+	public static final int HELLO_LENGTH = 3;
+	/**
+	 * The maximum length of a frame, excluding the length field.
+	 */
+	public static final int MAX_FRAME_LENGTH = 0xFFFF;
+
+	// kinds of START messages: a deck of cards, telling which class to decode
+	// the cards into, or the seed of a deal
+	private static final int CARD = 0;
+	private static final int BIG_TWO_CARD = 1;
+	private static final int DEAL_SEED = 2;
+	// kinds of RESUME messages: the session token sent by a client, the
+	// snapshot of the table sent by the server, or the refusal of the server
+	private static final int RESUME_TOKEN = 0;
+	private static final int RESUME_SNAPSHOT = 1;
+	private static final int RESUME_REFUSED = 2;
+	// kinds of SYNC messages: without a snapshot (the request of a client, or
+	// the answer of a table which cannot take snapshots) or with one
+	private static final int SYNC_EMPTY = 0;
+	private static final int SYNC_SNAPSHOT = 1;
+	// top bit of the count of a hand hidden from spectators
+	private static final int HIDDEN_HAND = 0x80;
+	// length of the length field of a frame
+	private static final int LENGTH_FIELD_LENGTH = 2;
+
+	/**
+	 * Returns the hello (or the answer to a hello) for the specified version.
+	 *
+	 * @param version
+	 *            the version of the binary protocol
+	 * @return the bytes of the hello
+	 */
+	public static byte[] hello(int version) {
+		return new byte[] { MAGIC_0, MAGIC_1, (byte) version };
+	}
+
+	/**
+	 * Returns true if the specified bytes start with the magic of the
+	 * handshake.
+	 *
+	 * @param b0
+	 *            the first byte received
+	 * @param b1
+	 *            the second byte received
+	 * @return true if the bytes are the magic of the handshake; false
+	 *         otherwise
+	 */
+	public static boolean isMagic(int b0, int b1) {
+		return (byte) b0 == MAGIC_0 && (byte) b1 == MAGIC_1;
+	}
+
+	public ByteBuffer encode(CardGameMessage message) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		buffer.position(LENGTH_FIELD_LENGTH);
+		buffer.put((byte) message.getType());
+		buffer.put((byte) message.getPlayerID());
+
+		Object data = message.getData();
+		switch (message.getType()) {
+		case CardGameMessage.PLAYER_LIST:
+			String[] names = (String[]) data;
+			buffer.put((byte) names.length);
+			for (String name : names) {
+				buffer = putString(buffer, name);
+			}
+			break;
+		case CardGameMessage.JOIN:
+		case CardGameMessage.QUIT:
+		case CardGameMessage.MSG:
+		case CardGameMessage.SESSION:
+			buffer = putString(buffer, (String) data);
+			break;
+		case CardGameMessage.RESUME:
+			if (data instanceof String) {
+				buffer.put((byte) RESUME_TOKEN);
+				buffer = putString(buffer, (String) data);
+			} else if (data instanceof TableSnapshot) {
+				buffer.put((byte) RESUME_SNAPSHOT);
+				buffer = putSnapshot(buffer, (TableSnapshot) data);
+			} else {
+				buffer.put((byte) RESUME_REFUSED);
+			}
+			break;
+		case CardGameMessage.SYNC:
+			if (data instanceof TableSnapshot) {
+				buffer.put((byte) SYNC_SNAPSHOT);
+				buffer = putSnapshot(buffer, (TableSnapshot) data);
+			} else {
+				buffer.put((byte) SYNC_EMPTY);
+			}
+			break;
+		case CardGameMessage.WATCH:
+			if (data == null) {
+				buffer.put((byte) 0);
+			} else {
+				buffer.put((byte) 1);
+				buffer.putInt((Integer) data);
+			}
+			break;
+		case CardGameMessage.VIEW:
+			buffer = putSnapshot(buffer, (TableSnapshot) data);
+			break;
+		case CardGameMessage.FULL:
+		case CardGameMessage.READY:
+		case CardGameMessage.PING:
+		case CardGameMessage.PONG:
+			break;
+		case CardGameMessage.START:
+			if (data instanceof DealSeed) {
+				DealSeed seed = (DealSeed) data;
+				buffer.put((byte) DEAL_SEED);
+				buffer.put((byte) seed.getAlgorithm());
+				buffer.putLong(seed.getSeed());
+				break;
+			}
+			Deck deck = (Deck) data;
+			buffer = ensureRemaining(buffer, 2 + deck.size());
+			buffer.put((byte) (deck.getCard(0) instanceof BigTwoCard ? BIG_TWO_CARD
+					: CARD));
+			buffer.put((byte) deck.size());
+			for (int i = 0; i < deck.size(); i++) {
+				Card card = deck.getCard(i);
+				buffer.put((byte) card.getId());
+			}
+			break;
+		case CardGameMessage.MOVE:
+			int mask = 0;
+			if (data != null) {
+				for (int idx : (int[]) data) {
+					if (idx < 0 || idx >= 13) {
+						throw new IOException("Card index out of range: " + idx);
+					}
+					mask |= 1 << idx;
+				}
+			}
+			buffer.putShort((short) mask);
+			break;
+		default:
+			throw new IOException("Cannot encode message type "
+					+ message.getType());
+		}
+		if (message.getSequence() > 0) {
+			buffer = ensureRemaining(buffer, 4);
+			buffer.putInt(message.getSequence());
+		}
+
+		int length = buffer.position() - LENGTH_FIELD_LENGTH;
+		if (length > MAX_FRAME_LENGTH) {
+			throw new IOException("Message too long: " + length + " bytes");
+		}
+		buffer.putShort(0, (short) length);
+		buffer.flip();
+		return buffer;
+	} // encode
+
+	public CardGameMessage decode(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < LENGTH_FIELD_LENGTH) {
+			return null;
+		}
+		int length = buffer.getShort(buffer.position()) & 0xFFFF;
+		if (buffer.remaining() < LENGTH_FIELD_LENGTH + length) {
+			return null;
+		}
+
+		int end = buffer.position() + LENGTH_FIELD_LENGTH + length;
+		ByteBuffer frame = buffer.duplicate();
+		frame.position(buffer.position() + LENGTH_FIELD_LENGTH);
+		frame.limit(end);
+		buffer.position(end);
+		try {
+			return decodeFrame(frame);
+		} catch (RuntimeException ex) {
+			throw new IOException("Malformed frame", ex);
+		}
+	} // decode
+
+	/**
+	 * Reads the next message from the specified blocking stream.
+	 *
+	 * @param in
+	 *            the stream to be read from
+	 * @return the message read
+	 * @throws IOException
+	 *             if the stream ends or the frame is malformed
+	 */
+	public CardGameMessage readMessage(DataInputStream in) throws IOException {
+		return readMessage(in, in.readUnsignedShort());
+	}
+
+	/**
+	 * Reads the rest of a frame whose length field has already been read from
+	 * the specified blocking stream.
+	 *
+	 * @param in
+	 *            the stream to be read from
+	 * @param length
+	 *            the length of the frame, as read from its length field
+	 * @return the message read
+	 * @throws IOException
+	 *             if the stream ends or the frame is malformed
+	 */
+	public CardGameMessage readMessage(DataInputStream in, int length)
+			throws IOException {
+		byte[] frame = new byte[length];
+		in.readFully(frame);
+		try {
+			return decodeFrame(ByteBuffer.wrap(frame));
+		} catch (RuntimeException ex) {
+			throw new IOException("Malformed frame", ex);
+		}
+	}
+
+	/**
+	 * Writes the specified message to the specified blocking stream.
+	 *
+	 * @param out
+	 *            the stream to be written to
+	 * @param message
+	 *            the message to be written
+	 * @throws IOException
+	 *             if the message cannot be encoded or written
+	 */
+	public void writeMessage(OutputStream out, CardGameMessage message)
+			throws IOException {
+		ByteBuffer frame = encode(message);
+		out.write(frame.array(), frame.arrayOffset(), frame.limit());
+	}
+
+	/**
+	 * Reads the answer to a hello from the specified stream.
+	 *
+	 * @param in
+	 *            the stream to be read from
+	 * @return the version chosen by the server, or -1 if the server does not
+	 *         speak the binary protocol
+	 * @throws IOException
+	 *             if the stream ends
+	 */
+	public static int readHelloAnswer(InputStream in) throws IOException {
+		byte[] answer = new byte[HELLO_LENGTH];
+		new DataInputStream(in).readFully(answer);
+		if (isMagic(answer[0], answer[1])) {
+			return answer[2];
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * Decodes the body of a frame (without the length field).
+	 */
+	private CardGameMessage decodeFrame(ByteBuffer frame) throws IOException {
+		int type = frame.get();
+		int playerID = frame.get();
+		Object data = null;
+
+		switch (type) {
+		case CardGameMessage.PLAYER_LIST:
+			String[] names = new String[frame.get() & 0xFF];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = getString(frame);
+			}
+			data = names;
+			break;
+		case CardGameMessage.JOIN:
+		case CardGameMessage.QUIT:
+		case CardGameMessage.MSG:
+		case CardGameMessage.SESSION:
+			data = getString(frame);
+			break;
+		case CardGameMessage.RESUME:
+			int resumeKind = frame.get();
+			if (resumeKind == RESUME_TOKEN) {
+				data = getString(frame);
+			} else if (resumeKind == RESUME_SNAPSHOT) {
+				data = getSnapshot(frame);
+			}
+			break;
+		case CardGameMessage.SYNC:
+			if (frame.get() == SYNC_SNAPSHOT) {
+				data = getSnapshot(frame);
+			}
+			break;
+		case CardGameMessage.WATCH:
+			if (frame.get() != 0) {
+				data = frame.getInt();
+			}
+			break;
+		case CardGameMessage.VIEW:
+			data = getSnapshot(frame);
+			break;
+		case CardGameMessage.FULL:
+		case CardGameMessage.READY:
+		case CardGameMessage.PING:
+		case CardGameMessage.PONG:
+			break;
+		case CardGameMessage.START:
+			int kind = frame.get();
+			if (kind == DEAL_SEED) {
+				int algorithm = frame.get();
+				data = new DealSeed(algorithm, frame.getLong());
+				break;
+			}
+			boolean bigTwo = kind == BIG_TWO_CARD;
+			int numOfCards = frame.get() & 0xFF;
+			Deck deck = bigTwo ? new BigTwoDeck() : new Deck();
+			deck.removeAllCards();
+			for (int i = 0; i < numOfCards; i++) {
+				int card = frame.get();
+				if (card < 0 || card >= 52) {
+					throw new IOException("Invalid card: " + card);
+				}
+				deck.addCard(bigTwo ? BigTwoCard.valueOf(card / 13, card % 13)
+						: Card.valueOf(card / 13, card % 13));
+			}
+			data = deck;
+			break;
+		case CardGameMessage.MOVE:
+			int mask = frame.getShort() & 0x1FFF;
+			if (mask != 0) {
+				int[] cardIdx = new int[Integer.bitCount(mask)];
+				for (int i = 0, j = 0; i < 13; i++) {
+					if ((mask & (1 << i)) != 0) {
+						cardIdx[j++] = i;
+					}
+				}
+				data = cardIdx;
+			}
+			break;
+		default:
+			throw new IOException("Unknown message type " + type);
+		}
+
+		CardGameMessage message = new CardGameMessage(type, playerID, data);
+		if (frame.remaining() >= 4) {
+			message.setSequence(frame.getInt());
+		}
+		return message;
+	} // decodeFrame
+
+	/**
+	 * Puts a length-prefixed UTF-8 string into the buffer, enlarging it if
+	 * needed.
+	 */
+	private static ByteBuffer putString(ByteBuffer buffer, String string)
+			throws IOException {
+		if (string == null) {
+			buffer = ensureRemaining(buffer, 2);
+			buffer.putShort((short) -1);
+			return buffer;
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length >= MAX_FRAME_LENGTH) {
+			throw new IOException("String too long: " + bytes.length + " bytes");
+		}
+		buffer = ensureRemaining(buffer, 2 + bytes.length);
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+		return buffer;
+	}
+
+	/**
+	 * Puts a snapshot of a table into the buffer, enlarging it if needed: the
+	 * 4-byte version of the table, the names of the players, the active
+	 * player, the number of passes, whether the game is in progress, the hands
+	 * of the players and the last hand on the table (each a 1-byte count
+	 * followed by the cards), preceded by the index of the player who played
+	 * it.
+	 */
+	private static ByteBuffer putSnapshot(ByteBuffer buffer,
+			TableSnapshot snapshot) throws IOException {
+		String[] names = snapshot.getPlayerNames();
+		buffer = ensureRemaining(buffer, 5);
+		buffer.putInt(snapshot.getVersion());
+		buffer.put((byte) names.length);
+		for (String name : names) {
+			buffer = putString(buffer, name);
+		}
+		buffer = ensureRemaining(buffer, 3);
+		buffer.put((byte) snapshot.getCurrentPlayerIdx());
+		buffer.put((byte) snapshot.getNumOfPasses());
+		buffer.put((byte) (snapshot.isInProgress() ? 1 : 0));
+		int[][] hands = snapshot.getHands();
+		buffer = ensureRemaining(buffer, 1);
+		buffer.put((byte) hands.length);
+		for (int[] hand : hands) {
+			if (hand.length > 0 && hand[0] == TableSnapshot.HIDDEN_CARD) {
+				buffer = ensureRemaining(buffer, 1);
+				buffer.put((byte) (HIDDEN_HAND | hand.length));
+			} else {
+				buffer = putCards(buffer, hand);
+			}
+		}
+		buffer = ensureRemaining(buffer, 1);
+		buffer.put((byte) snapshot.getLastHandPlayerIdx());
+		int[] lastHand = snapshot.getLastHand();
+		return putCards(buffer, lastHand == null ? new int[0] : lastHand);
+	} // putSnapshot
+
+	/**
+	 * Gets a snapshot of a table from the buffer.
+	 */
+	private static TableSnapshot getSnapshot(ByteBuffer buffer)
+			throws IOException {
+		int version = buffer.getInt();
+		String[] names = new String[buffer.get() & 0xFF];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = getString(buffer);
+		}
+		int currentPlayerIdx = buffer.get();
+		int numOfPasses = buffer.get();
+		boolean inProgress = buffer.get() != 0;
+		int[][] hands = new int[buffer.get() & 0xFF][];
+		for (int i = 0; i < hands.length; i++) {
+			int count = buffer.get(buffer.position()) & 0xFF;
+			if ((count & HIDDEN_HAND) != 0) {
+				buffer.get();
+				hands[i] = new int[count & ~HIDDEN_HAND];
+				Arrays.fill(hands[i], TableSnapshot.HIDDEN_CARD);
+			} else {
+				hands[i] = getCards(buffer);
+			}
+		}
+		int lastHandPlayerIdx = buffer.get();
+		int[] lastHand = getCards(buffer);
+		return new TableSnapshot(version, names, inProgress, currentPlayerIdx,
+				numOfPasses, hands, lastHandPlayerIdx,
+				lastHandPlayerIdx < 0 ? null : lastHand);
+	} // getSnapshot
+
+	/**
+	 * Puts a 1-byte count followed by the IDs of the cards into the buffer,
+	 * enlarging it if needed.
+	 */
+	private static ByteBuffer putCards(ByteBuffer buffer, int[] cards) {
+		buffer = ensureRemaining(buffer, 1 + cards.length);
+		buffer.put((byte) cards.length);
+		for (int card : cards) {
+			buffer.put((byte) card);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Gets a 1-byte count followed by the IDs of the cards from the buffer.
+	 */
+	private static int[] getCards(ByteBuffer buffer) throws IOException {
+		int[] cards = new int[buffer.get() & 0xFF];
+		for (int i = 0; i < cards.length; i++) {
+			cards[i] = buffer.get();
+			if (cards[i] < 0 || cards[i] >= 52) {
+				throw new IOException("Invalid card: " + cards[i]);
+			}
+		}
+		return cards;
+	}
+
+	/**
+	 * Gets a length-prefixed UTF-8 string from the buffer.
+	 */
+	private static String getString(ByteBuffer buffer) {
+		short length = buffer.getShort();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns a buffer holding the contents of the specified buffer and with
+	 * at least the specified number of bytes remaining.
+	 */
+	private static ByteBuffer ensureRemaining(ByteBuffer buffer, int remaining) {
+		if (buffer.remaining() >= remaining) {
+			return buffer;
+		}
+		ByteBuffer larger = ByteBuffer.allocate(Math.max(
+				buffer.capacity() * 2, buffer.position() + remaining));
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+}
@@ -0,0 +1,371 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to model a simulated Big Two client without a GUI, used
+ * by the LoadGenerator to put load on a server. A bot joins the game, gets
+ * ready, plays a legal move whenever it is its turn and chats now and then.
+ * <p>
+ * The state of the game is kept by a BigTwoEngine fed with the messages from
+ * the server, in the same way as the GUI client does. A bot leads with its
+ * lowest single and otherwise plays the first combination of its cards which
+ * beats the last hand, or passes. Its moves and chats are timed on a timer
+ * shared by all the bots, and its messages are read by a thread of its own.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public class BotClient implements NetworkGame, CardGameListener {
+	// the largest number of cards in a hand
+	private static final int MAX_HAND_SIZE = 5;
+
+	private final LoadGenerator generator; // the statistics of the load test
+	private final ScheduledExecutorService timer; // timer shared by the bots
+	private final BigTwoEngine core = new BigTwoEngine(); // state of the game
+	private final BinaryMessageCodec codec = new BinaryMessageCodec();
+	private final long thinkTime; // time (in milliseconds) taken for a move
+	private final long chatInterval; // mean time between two chats, or 0
+	private Socket sock; // connection to the server
+	private BufferedOutputStream bos; // output stream of the connection
+	private DataInputStream dis; // input stream of the connection
+	private int playerID = -1;
+	private String playerName;
+	private String serverIP;
+	private int serverPort;
+	private long moveSentAt = 0; // time (from System.nanoTime()) of the last move sent
+	private ScheduledFuture<?> chats = null; // the next chat, or null
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates and returns an instance of the BotClient class.
+	 *
+	 * @param generator
+	 *            the load generator collecting the statistics
+	 * @param timer
+	 *            the timer shared by the bots
+	 * @param thinkTime
+	 *            the time (in milliseconds) the bot takes to make a move
+	 * @param chatInterval
+	 *            the mean time (in milliseconds) between two chat messages of
+	 *            the bot, or 0 for a silent bot
+	 */
+	public BotClient(LoadGenerator generator, ScheduledExecutorService timer,
+			long thinkTime, long chatInterval) {
+		this.generator = generator;
+		this.timer = timer;
+		this.thinkTime = thinkTime;
+		this.chatInterval = chatInterval;
+		core.addListener(this);
+	}
+
+	public int getPlayerID() {
+		return playerID;
+	}
+
+	public void setPlayerID(int playerID) {
+		this.playerID = playerID;
+	}
+
+	public String getPlayerName() {
+		return playerName;
+	}
+
+	public void setPlayerName(String playerName) {
+		this.playerName = playerName;
+	}
+
+	public String getServerIP() {
+		return serverIP;
+	}
+
+	public void setServerIP(String serverIP) {
+		this.serverIP = serverIP;
+	}
+
+	public int getServerPort() {
+		return serverPort;
+	}
+
+	public void setServerPort(int serverPort) {
+		this.serverPort = serverPort;
+	}
+
+	/**
+	 * Connects to the server using the binary protocol and starts the thread
+	 * reading the messages from the server. A failure is counted by the load
+	 * generator.
+	 */
+	public void connect() {
+		try {
+			sock = new Socket();
+			sock.connect(new InetSocketAddress(serverIP, serverPort));
+			sock.setTcpNoDelay(true);
+			bos = new BufferedOutputStream(sock.getOutputStream());
+			bos.write(BinaryMessageCodec.hello(BinaryMessageCodec.VERSION));
+			bos.flush();
+			dis = new DataInputStream(new BufferedInputStream(
+					sock.getInputStream()));
+			if (BinaryMessageCodec.readHelloAnswer(dis) < 1) {
+				throw new IOException("The server does not speak the binary protocol");
+			}
+		} catch (IOException ex) {
+			generator.connectionFailed(this, ex);
+			close();
+			return;
+		}
+		generator.connectionOpened();
+
+		Thread readerThread = new Thread(new ServerHandler(), "bot-"
+				+ playerName);
+		readerThread.setDaemon(true);
+		readerThread.start();
+	} // connect
+
+	/**
+	 * Closes the connection to the server.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		synchronized (this) {
+			if (chats != null) {
+				chats.cancel(false);
+			}
+		}
+		try {
+			if (sock != null) {
+				sock.close();
+			}
+		} catch (IOException ex) {
+			// the socket is unusable anyway
+		}
+	} // close
+
+	public synchronized void parseMessage(GameMessage message) {
+		switch (message.getType()) {
+		case CardGameMessage.PLAYER_LIST:
+			playerID = message.getPlayerID();
+			sendMessage(new CardGameMessage(CardGameMessage.JOIN, -1,
+					playerName));
+			break;
+		case CardGameMessage.JOIN:
+			if (message.getPlayerID() == playerID) {
+				sendMessage(new CardGameMessage(CardGameMessage.READY, -1,
+						null));
+				scheduleChat();
+			}
+			break;
+		case CardGameMessage.FULL:
+			generator.connectionRejected();
+			close();
+			break;
+		case CardGameMessage.QUIT:
+			// the game is abandoned, as in the GUI client
+			core.stop();
+			sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
+			break;
+		case CardGameMessage.START:
+			core.start(((DealSeed) message.getData()).deal(new BigTwoDeck()));
+			break;
+		case CardGameMessage.MOVE:
+			if (message.getPlayerID() == playerID && moveSentAt != 0) {
+				generator.moveAcknowledged(System.nanoTime() - moveSentAt);
+				moveSentAt = 0;
+			}
+			core.checkMove(message.getPlayerID(), (int[]) message.getData());
+			break;
+		case CardGameMessage.MSG:
+			generator.chatReceived();
+			break;
+		case CardGameMessage.PING:
+			sendMessage(new CardGameMessage(CardGameMessage.PONG, -1, null));
+			break;
+		default:
+			break;
+		}
+	} // parseMessage
+
+	public synchronized void sendMessage(GameMessage message) {
+		if (closed) {
+			return;
+		}
+		try {
+			codec.writeMessage(bos, (CardGameMessage) message);
+			bos.flush();
+		} catch (IOException ex) {
+			close();
+		}
+	} // sendMessage
+
+	public void gameStarted() {
+		scheduleMove();
+	}
+
+	public void legalMove(int playerIdx, Hand hand) {
+		if (playerIdx == playerID) {
+			generator.moveMade();
+		}
+		scheduleMove();
+	}
+
+	public void illegalMove(int playerIdx, int[] cardIdx) {
+		if (playerIdx == playerID) {
+			// never expected; passes instead if it can
+			generator.moveRejected();
+			if (cardIdx != null && getLastHand() != null) {
+				moveSentAt = System.nanoTime();
+				sendMessage(new CardGameMessage(CardGameMessage.MOVE, -1, null));
+			}
+		}
+	}
+
+	public void gameEnded() {
+		if (core.getPlayerList().get(playerID).getCardsInHand().isEmpty()) {
+			generator.gameFinished();
+		}
+		sendMessage(new CardGameMessage(CardGameMessage.READY, -1, null));
+	}
+
+	/**
+	 * Schedules a move after the think time if it is the turn of this bot.
+	 */
+	private void scheduleMove() {
+		if (core.isInProgress() && core.getCurrentPlayerIdx() == playerID) {
+			timer.schedule(this::makeMove, thinkTime, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Schedules the next chat message of this bot, after a random time with
+	 * the mean of the chat interval.
+	 */
+	private synchronized void scheduleChat() {
+		if (chatInterval <= 0 || closed || chats != null) {
+			return;
+		}
+		long delay = (long) (-Math.log(1 - ThreadLocalRandom.current()
+				.nextDouble()) * chatInterval);
+		chats = timer.schedule(() -> {
+			synchronized (this) {
+				chats = null;
+			}
+			sendMessage(new CardGameMessage(CardGameMessage.MSG, -1, "Hello from "
+					+ playerName));
+			generator.chatSent();
+			scheduleChat();
+		}, delay, TimeUnit.MILLISECONDS);
+	} // scheduleChat
+
+	/**
+	 * Chooses and sends a move, if it is still the turn of this bot. Runs on
+	 * the timer.
+	 */
+	private synchronized void makeMove() {
+		if (closed || !core.isInProgress()
+				|| core.getCurrentPlayerIdx() != playerID || moveSentAt != 0) {
+			return;
+		}
+		moveSentAt = System.nanoTime();
+		sendMessage(new CardGameMessage(CardGameMessage.MOVE, -1, chooseMove()));
+	}
+
+	/**
+	 * Chooses a legal move from the cards in hand.
+	 *
+	 * @return the indices of the cards to be played, or null for a pass
+	 */
+	private int[] chooseMove() {
+		CardGamePlayer player = core.getPlayerList().get(playerID);
+		Hand lastHand = getLastHand();
+		if (lastHand == null) {
+			// the cards in hand are sorted, so the first one is the lowest,
+			// which is the 3 of Diamonds in the first hand of a game
+			return new int[] { 0 };
+		}
+
+		int size = lastHand.size();
+		int numOfCards = player.getNumOfCards();
+		if (size > MAX_HAND_SIZE || size > numOfCards) {
+			return null;
+		}
+		// tries the combinations of the given size in lexicographic order,
+		// classifying them without creating any hands
+		int lastKey = lastHand.getKey();
+		int[] cardIdx = new int[size];
+		for (int i = 0; i < size; i++) {
+			cardIdx[i] = i;
+		}
+		while (true) {
+			long cards = CardSet.EMPTY;
+			for (int idx : cardIdx) {
+				cards |= CardSet.of(player.getCardsInHand().getCard(idx));
+			}
+			if (HandClassifier.beats(HandClassifier.classify(cards), lastKey)) {
+				return cardIdx;
+			}
+
+			// moves on to the next combination
+			int i = size - 1;
+			while (i >= 0 && cardIdx[i] == numOfCards - size + i) {
+				i--;
+			}
+			if (i < 0) {
+				return null;
+			}
+			cardIdx[i]++;
+			for (int j = i + 1; j < size; j++) {
+				cardIdx[j] = cardIdx[j - 1] + 1;
+			}
+		}
+	} // chooseMove
+
+	/**
+	 * Returns the hand to be beaten, or null if this bot is to lead.
+	 */
+	private Hand getLastHand() {
+		if (core.getHandsOnTable().isEmpty()) {
+			return null;
+		}
+		Hand lastHand = core.getHandsOnTable().get(
+				core.getHandsOnTable().size() - 1);
+		// everyone else has passed if this bot played the last hand
+		if (lastHand.getPlayer() == core.getPlayerList().get(playerID)) {
+			return null;
+		}
+		return lastHand;
+	}
+
+	/**
+	 * This inner class is used for receiving incoming messages from the
+	 * server.
+	 *
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class ServerHandler implements Runnable {
+		// implementation of method from the Runnable interface
+		public void run() {
+			try {
+				while (!closed) {
+					parseMessage(codec.readMessage(dis));
+				}
+			} catch (Exception ex) {
+				if (!closed) {
+					generator.connectionLost(BotClient.this, ex);
+				}
+			}
+			close();
+			generator.connectionClosed();
+		}
+	} // ServerHandler
+}
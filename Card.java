@@ -1,7 +1,11 @@
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 /**
- * This class is used for representing a card in general card games.
+ * This class is used for representing a card in general card games. There is
+ * only one instance of each of the 52 cards, which is returned by valueOf();
+ * cards deserialized are replaced by that instance.
  * 
  * @author Kenneth Wong
  */
@@ -14,6 +18,15 @@ public class Card implements Comparable<Card>, Serializable {
 	protected final int suit; // 0 - 3
 	protected final int rank; // 0 - 12
 
+	// the instances of the cards, indexed by their IDs
+	private static final Card[] CARDS = new Card[52];
+
+	static {
+		for (int id = 0; id < CARDS.length; id++) {
+			CARDS[id] = new Card(id / 13, id % 13);
+		}
+	}
+
 	/**
 	 * Creates and returns an instance of the Card class.
 	 * 
@@ -25,11 +38,55 @@ public class Card implements Comparable<Card>, Serializable {
 	 *             0 = 'A', 1 = '2', 2 = '3', ..., 8 = '9', 9 = '0', 10 = 'J', 11 =
 	 *             'Q', 12 = 'K'
 	 */
-	public Card(int suit, int rank) {
+	protected Card(int suit, int rank) {
 		this.suit = suit;
 		this.rank = rank;
 	}
 
+	/**
+	 * Returns the instance of the card with the specified suit and rank.
+	 * 
+	 * @param suit an int value between 0 and 3 representing the suit of the card
+	 * @param rank an int value between 0 and 12 representing the rank of the card
+	 * @return the card
+	 * @throws IllegalArgumentException if the suit or the rank is out of range
+	 */
+	public static Card valueOf(int suit, int rank) {
+		return CARDS[getId(suit, rank)];
+	}
+
+	/**
+	 * Returns the ID of a card, checking its suit and rank.
+	 * 
+	 * @param suit the suit of the card
+	 * @param rank the rank of the card
+	 * @return the ID of the card (suit * 13 + rank)
+	 * @throws IllegalArgumentException if the suit or the rank is out of range
+	 */
+	static int getId(int suit, int rank) {
+		if (suit < 0 || suit > 3 || rank < 0 || rank > 12) {
+			throw new IllegalArgumentException("Invalid card: suit " + suit + ", rank " + rank);
+		}
+		return suit * 13 + rank;
+	}
+
+	/**
+	 * Replaces a deserialized card by the instance of the card.
+	 * 
+	 * @return the instance of the card
+	 * @throws ObjectStreamException if the suit or the rank is out of range
+	 */
+	protected Object readResolve() throws ObjectStreamException {
+		if (getClass() != Card.class) {
+			return this;
+		}
+		try {
+			return valueOf(suit, rank);
+		} catch (IllegalArgumentException ex) {
+			throw new InvalidObjectException(ex.getMessage());
+		}
+	}
+
 	/**
 	 * Returns the suit of a card.
 	 * 
@@ -53,6 +110,15 @@ public class Card implements Comparable<Card>, Serializable {
 		return rank;
 	}
 
+	/**
+	 * Returns the ID of a card, which identifies it among the 52 cards.
+	 * 
+	 * @return an int value between 0 and 51: suit * 13 + rank
+	 */
+	public int getId() {
+		return suit * 13 + rank;
+	}
+
 	/**
 	 * Returns a string representation of the card.
 	 * 
@@ -95,15 +161,15 @@ public class Card implements Comparable<Card>, Serializable {
 	 *         false otherwise
 	 */
 	public boolean equals(Object card) {
-		return (this.rank == ((Card) card).getRank() && suit == ((Card) card).getSuit());
+		return this == card || (this.rank == ((Card) card).getRank() && suit == ((Card) card).getSuit());
 	}
 
 	/**
-	 * Returns a hash code value for the card.
+	 * Returns a hash code value for the card, which is its ID.
 	 * 
 	 * @return a hash code value for the card
 	 */
 	public int hashCode() {
-		return rank;
+		return getId();
 	}
 }
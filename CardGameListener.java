@@ -0,0 +1,39 @@
+/**
+ * This interface is used to model a listener of the events of a card game,
+ * e.g., a user interface which updates itself when a move is made. The game
+ * itself has no user interface or network dependency.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public interface CardGameListener {
+	/**
+	 * Called when a new game starts and the cards have been dealt.
+	 */
+	public void gameStarted();
+
+	/**
+	 * Called when a legal move has been made.
+	 * 
+	 * @param playerIdx
+	 *            the index of the player who made the move
+	 * @param hand
+	 *            the hand played, or null for a pass
+	 */
+	public void legalMove(int playerIdx, Hand hand);
+
+	/**
+	 * Called when an illegal move has been rejected.
+	 * 
+	 * @param playerIdx
+	 *            the index of the player who tried the move
+	 * @param cardIdx
+	 *            the indices of the cards tried, or null for a pass
+	 */
+	public void illegalMove(int playerIdx, int[] cardIdx);
+
+	/**
+	 * Called when the game ends, after the winning move.
+	 */
+	public void gameEnded();
+}
@@ -41,7 +41,8 @@ public class CardGameMessage extends GameMessage {
 	public static final int READY = 4;
 	/**
 	 * Broadcast by the server when all clients are ready for a new game. In this message, playerID is 
-	 * -1 (no being used), and data is a reference to a Deck object (a shuffled deck for the new game).
+	 * -1 (no being used), and data is a reference to a DealSeed object from which the shuffled deck for
+	 * the new game is rebuilt (or to the Deck object itself, for clients using plain Java serialization).
 	 */
 	public static final int START = 5;
 	/**
@@ -57,6 +58,58 @@ public class CardGameMessage extends GameMessage {
 	 * sent this chat message, and data is a reference to a string containing a formated chat message.
 	 */
 	public static final int MSG = 7;
+	/**
+	 * Sent by the server to a client which has been silent for a while, to check that the connection
+	 * is still alive. The client answers with a PONG message. A client may also send a PING message
+	 * to the server, which answers with a PONG message. In this message, playerID is -1 (not being
+	 * used) and data is simply null (not being used).
+	 */
+	public static final int PING = 8;
+	/**
+	 * Sent in answer to a PING message. In this message, playerID is -1 (not being used) and data is
+	 * simply null (not being used).
+	 */
+	public static final int PONG = 9;
+	/**
+	 * Sent by the server to a client after it has joined the game. In this message, playerID
+	 * specifies the player, and data is a string holding the session token with which the client
+	 * can resume its seat after losing its connection.
+	 */
+	public static final int SESSION = 10;
+	/**
+	 * Sent by a client to the server as its first message on a new connection, to resume the seat
+	 * of a lost connection. In this message, playerID is -1 (not being used) and data is the session
+	 * token. The server answers with a RESUME message in which playerID specifies the seat and data
+	 * is a reference to a TableSnapshot object, or data is null if the session cannot be resumed.
+	 */
+	public static final int RESUME = 11;
+	/**
+	 * Sent by a client to the server to catch up with the table, e.g., after missing a state change.
+	 * The server answers with a SYNC message carrying a snapshot of the table, after which the client
+	 * follows the state changes broadcast by the table. In the message sent by a client, playerID is
+	 * -1 (not being used) and data is simply null (not being used). In the answer of the server,
+	 * playerID specifies the player and data is a reference to a TableSnapshot object, or null if the
+	 * table cannot take snapshots.
+	 */
+	public static final int SYNC = 12;
+	/**
+	 * Sent by a client to the server to watch a table as a spectator, without taking a seat. In this
+	 * message, playerID is -1 (not being used) and data is an Integer specifying the ID of the table,
+	 * or -1 for the busiest table. The server answers with a stream of VIEW messages, or with a WATCH
+	 * message in which data is null if the table cannot be watched.
+	 */
+	public static final int WATCH = 13;
+	/**
+	 * Sent by the server to the spectators of a table after each state change. In this message,
+	 * playerID is -1 (not being used) and data is a reference to a TableSnapshot object in which the
+	 * cards in the hands of the players are hidden. The sequence number of the message is the version
+	 * of the table shown. Each VIEW message supersedes the previous one.
+	 */
+	public static final int VIEW = 14;
+
+	// sequence number of the state change made by this message, or 0 if the
+	// message does not change the state of the table
+	private int sequence = 0;
 
 	/**
 	 * Creates and returns an instance of CardGameMessage.
@@ -71,4 +124,29 @@ public class CardGameMessage extends GameMessage {
 	public CardGameMessage(int type, int playerID, Object data) {
 		super(type, playerID, data);
 	}
+
+	/**
+	 * Returns the sequence number of this message. The state changes of a
+	 * table (the PLAYER_LIST, JOIN, QUIT, START and legal MOVE messages it
+	 * broadcasts) are numbered 1, 2, 3, and so on, so that a client can tell
+	 * whether it has missed one; the sequence number of a PLAYER_LIST message
+	 * is the version of the table when it was sent.
+	 * 
+	 * @return the sequence number of this message, or 0 if this message does
+	 *         not change the state of the table
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Sets the sequence number of this message.
+	 * 
+	 * @param sequence
+	 *            the sequence number of this message, or 0 if this message
+	 *            does not change the state of the table
+	 */
+	public void setSequence(int sequence) {
+		this.sequence = sequence;
+	}
 }
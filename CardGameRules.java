@@ -0,0 +1,59 @@
+/**
+ * This interface is used to model the rules of a card game enforced by a card
+ * game server, so that moves are validated once at the source rather than by
+ * every client.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public interface CardGameRules {
+	/**
+	 * Starts a new game with the specified shuffled deck.
+	 * 
+	 * @param deck
+	 *            the shuffled deck for the new game
+	 */
+	public void start(Deck deck);
+
+	/**
+	 * Stops the game in progress, e.g., when a player leaves the table.
+	 */
+	public void stop();
+
+	/**
+	 * Returns true if a game is in progress.
+	 * 
+	 * @return true if a game is in progress; false otherwise
+	 */
+	public boolean isInProgress();
+
+	/**
+	 * Returns the index of the player who is to make the next move.
+	 * 
+	 * @return the index of the active player
+	 */
+	public int getCurrentPlayerIdx();
+
+	/**
+	 * Checks the specified move, and makes it if it is legal.
+	 * 
+	 * @param playerIdx
+	 *            the index of the player who makes the move
+	 * @param cardIdx
+	 *            the indices of the cards played, or null for a pass
+	 * @return true if the move is legal and has been made; false otherwise
+	 */
+	public boolean acceptMove(int playerIdx, int[] cardIdx);
+
+	/**
+	 * Returns a snapshot of the state of the game, sent to a player resuming
+	 * its seat or catching up with the table.
+	 * 
+	 * @param version
+	 *            the version of the table
+	 * @param playerNames
+	 *            the names of the players at the table
+	 * @return a snapshot of the state of the game
+	 */
+	public TableSnapshot getSnapshot(int version, String[] playerNames);
+}
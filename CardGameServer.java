@@ -1,17 +1,26 @@
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
-
-import javax.swing.JFrame;
-import javax.swing.JMenu;
-import javax.swing.JMenuBar;
-import javax.swing.JMenuItem;
-import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
-import javax.swing.ScrollPaneConstants;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class is used to model a card game server.
@@ -26,25 +35,115 @@ public class CardGameServer {
 	private String serverName;
 	// The maximum number of players in a card game
 	private final int maxNumOfPlayers;
-	// Array for holding sockets of the clients
-	private Socket[] clientSockets;
-	// Array for holding ObjectOutputStreams of the clients
-	private ObjectOutputStream[] clientOutputStreams;
-	// Array for holding player names of the clients
-	private String[] clientNames;
-	// Array for holding ready states of the clients
-	private boolean[] clientReadyStates;
-	// number of current players
-	private int numOfPlayers = 0;
-	// the main frame of the server
-	private JFrame frame = null;
-	// text area for displaying server states
-	private JTextArea textArea = null;
+	// The maximum number of tables hosted by this server
+	private final int maxNumOfTables;
+	// List of the tables hosted by this server
+	private ArrayList<CardGameTable> tables = new ArrayList<CardGameTable>();
+	// the GUI of the server, or null if the server is headless or not started
+	private CardGameServerGUI gui = null;
+	// a boolean indicating if the server runs without a GUI
+	private boolean headless = Boolean.getBoolean("java.awt.headless");
+	// the logger of the server
+	private final AsyncLogger logger = new AsyncLogger();
 	// a boolean indicating if the server is up
 	private boolean serverUp = false;
+	// lock guarding the list of tables; the state of each game is only
+	// touched by the event loop of its own table
+	private final ReentrantLock tablesLock = new ReentrantLock();
+	// executor running the event loops of the tables
+	private final ExecutorService tableExecutor;
+	// set of the connections seated at or watching the tables
+	private final Set<ClientConnection> connections = ConcurrentHashMap
+			.newKeySet();
+	// queue depth at which user chat messages to a client are dropped
+	private int dropHighWaterMark = ClientConnection.DEFAULT_DROP_HIGH_WATER_MARK;
+	// queue depth at which a client is disconnected
+	private int disconnectHighWaterMark = ClientConnection.DEFAULT_DISCONNECT_HIGH_WATER_MARK;
+	// factory for the threads serving the connections, or null for platform
+	// threads
+	private ThreadFactory connectionThreadFactory = null;
+	// The codec of the binary protocol, shared by all the transports so that
+	// a broadcast is framed only once
+	final BinaryMessageCodec binaryCodec = new BinaryMessageCodec();
+	// the metrics of the server
+	private final ServerMetrics metrics = new ServerMetrics(this);
+	// port of the local HTTP endpoint serving the metrics, or -1 if disabled
+	private int metricsPort = -1;
+	// timer shared by the delayed tasks of the server, e.g., closing the
+	// connections of rejected clients
+	private final ScheduledExecutorService timer;
+	// maximum number of pending connections queued by the server socket
+	private int acceptBacklog = DEFAULT_ACCEPT_BACKLOG;
+	// limiter of the rate at which connections are accepted, or null if the
+	// rate is not limited
+	private AcceptRateLimiter acceptRateLimiter = null;
+	// time (in milliseconds) a client may be silent before it is sent a PING,
+	// or 0 to disable the heartbeats
+	private long heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+	// time (in milliseconds) a client answering PINGs may be silent before it
+	// is disconnected
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	// timer wheel tracking the idle deadlines of the connections
+	private final HashedTimerWheel idleTimers = new HashedTimerWheel(
+			IDLE_TIMER_TICK, TimeUnit.MILLISECONDS, 512);
+	// time (in milliseconds) for which the seat of a disconnected player is
+	// held, or 0 to free it at once
+	private long sessionGracePeriod = DEFAULT_SESSION_GRACE_PERIOD;
+	// tables holding the seats of the players, by session token
+	private final ConcurrentHashMap<String, CardGameTable> sessions = new ConcurrentHashMap<String, CardGameTable>();
+	// number of seats held for disconnected players
+	private final AtomicInteger numOfHeldSeats = new AtomicInteger();
+	// generator of the session tokens
+	private final SecureRandom sessionRandom = new SecureRandom();
+	// executor writing the views of the tables to the spectators, on a single
+	// low-priority thread so that spectators never hold up the players
+	private final ExecutorService spectatorExecutor;
+	// time (in milliseconds) by which the views sent to the spectators lag
+	// behind the game
+	private long spectatorDelay = 0;
+	// maximum number of spectators of a table
+	private int maxNumOfSpectators = DEFAULT_MAX_NUM_OF_SPECTATORS;
+	// number of connections watching the tables
+	private final AtomicInteger numOfSpectators = new AtomicInteger();
+	// Queue depth at which views to a spectator are dropped, as a newer view
+	// supersedes them
+	private static final int SPECTATOR_DROP_HIGH_WATER_MARK = 8;
+	// Resolution (in milliseconds) of the idle deadlines
+	private static final int IDLE_TIMER_TICK = 100;
+	// Time (in milliseconds) allowed to a client for starting the handshake
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+	// Time (in milliseconds) given to a rejected client for reading the FULL
+	// message before its connection is closed
+	private static final int REJECTION_CLOSE_DELAY = 1000;
+
+	/**
+	 * The default maximum number of pending connections queued by the server
+	 * socket.
+	 */
+	public static final int DEFAULT_ACCEPT_BACKLOG = 50;
+	/**
+	 * The default time (in milliseconds) a client may be silent before it is
+	 * sent a PING.
+	 */
+	public static final long DEFAULT_HEARTBEAT_INTERVAL = 15000;
+	/**
+	 * The default time (in milliseconds) a client may be silent before it is
+	 * disconnected.
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 45000;
+	/**
+	 * The default time (in milliseconds) for which the seat of a disconnected
+	 * player is held.
+	 */
+	public static final long DEFAULT_SESSION_GRACE_PERIOD = 60000;
+	/**
+	 * The default maximum number of spectators of a table.
+	 */
+	public static final int DEFAULT_MAX_NUM_OF_SPECTATORS = 1000;
 
 	/**
-	 * Creates and returns an instance of the BigTwoServer class.
+	 * Creates and returns an instance of the CardGameServer class hosting a
+	 * single table.
 	 * 
 	 * @param serverName
 	 *            the name of this card game server
@@ -52,51 +151,614 @@ public class CardGameServer {
 	 *            the maximum number of players in a card game
 	 */
 	public CardGameServer(String serverName, int maxNumOfPlayers) {
+		this(serverName, maxNumOfPlayers, 1);
+	}
+
+	/**
+	 * Creates and returns an instance of the CardGameServer class.
+	 * 
+	 * @param serverName
+	 *            the name of this card game server
+	 * @param maxNumOfPlayers
+	 *            the maximum number of players in a card game
+	 * @param maxNumOfTables
+	 *            the maximum number of tables (i.e., concurrent games) hosted
+	 *            by this server
+	 */
+	public CardGameServer(String serverName, int maxNumOfPlayers,
+			int maxNumOfTables) {
 		this.serverName = serverName;
 		this.maxNumOfPlayers = maxNumOfPlayers;
+		this.maxNumOfTables = maxNumOfTables;
+		this.tableExecutor = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors(), new ThreadFactory() {
+			public Thread newThread(Runnable task) {
+				Thread t = new Thread(task, "table-event-loop");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread t = new Thread(task, "server-timer");
+			t.setDaemon(true);
+			return t;
+		});
+		this.spectatorExecutor = Executors.newSingleThreadExecutor(task -> {
+			Thread t = new Thread(task, "spectator-fan-out");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+	}
+
+	/**
+	 * Sets whether the server runs without a GUI. A headless server never
+	 * loads Swing, and logs to the console unless a log file is set. Must be
+	 * called before the server is started.
+	 * 
+	 * @param headless
+	 *            true to run the server without a GUI
+	 */
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+	}
 
-		// creates arrays for holding client sockets, output streams, player
-		// names, and ready states
-		clientSockets = new Socket[maxNumOfPlayers];
-		clientOutputStreams = new ObjectOutputStream[maxNumOfPlayers];
-		clientNames = new String[maxNumOfPlayers];
-		clientReadyStates = new boolean[maxNumOfPlayers];
+	/**
+	 * Returns true if the server runs without a GUI.
+	 * 
+	 * @return true if the server runs without a GUI; false otherwise
+	 */
+	public boolean isHeadless() {
+		return headless;
+	}
 
-		buildGUI();
+	/**
+	 * Returns the logger of the server, e.g., for setting a log file or the
+	 * levels to be logged.
+	 * 
+	 * @return the logger of the server
+	 */
+	public AsyncLogger getLogger() {
+		return logger;
 	}
 
 	/**
-	 * Builds the GUI for the server
+	 * Returns the metrics of the server.
+	 * 
+	 * @return the metrics of the server
+	 */
+	public ServerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the port of the local HTTP endpoint serving the metrics in the
+	 * Prometheus text format. The endpoint only listens on the loopback
+	 * interface. Must be called before the server is started.
+	 * 
+	 * @param metricsPort
+	 *            the port of the endpoint, or -1 to disable it
+	 */
+	public void setMetricsPort(int metricsPort) {
+		this.metricsPort = metricsPort;
+	}
+
+	/**
+	 * Registers the metrics with JMX and starts the HTTP endpoint, if enabled.
+	 * A failure is logged and does not stop the server.
+	 * 
+	 * @param port
+	 *            the port at which the server is started
+	 */
+	private void startMetrics(int port) {
+		try {
+			metrics.registerMBean(port);
+		} catch (Exception ex) {
+			println(LogLevel.WARN, "Cannot register the metrics with JMX: " + ex);
+			if (!silentMode) ex.printStackTrace();
+		}
+		if (metricsPort >= 0) {
+			try {
+				metrics.startHttpServer(metricsPort);
+				println("Serves the metrics at http://localhost:"
+						+ metrics.getHttpPort() + "/metrics");
+			} catch (IOException ex) {
+				println(LogLevel.WARN, "Cannot serve the metrics at port "
+						+ metricsPort + ": " + ex);
+				if (!silentMode) ex.printStackTrace();
+			}
+		}
+	} // startMetrics
+
+	/**
+	 * Builds the GUI for the server unless it is headless, and chooses the
+	 * console of the logger.
 	 */
 	private void buildGUI() {
-		// build a GUI
-		frame = new JFrame(serverName);
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		textArea = new JTextArea(20, 40);
-		textArea.setEditable(false);
-		textArea.setLineWrap(true);
-		textArea.setWrapStyleWord(true);
-		JScrollPane scroller = new JScrollPane(textArea);
-		scroller.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
-		scroller.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
-		frame.add(scroller);
-
-		// build the menu bar
-		JMenuItem clearMenuItem = new JMenuItem("Clear console");
-		clearMenuItem.addActionListener(new ClearMenuItemListener());
-		JMenuItem quitMenuItem = new JMenuItem("Quit");
-		quitMenuItem.addActionListener(new QuitMenuItemListener());
-		JMenu menu = new JMenu("Option");
-		menu.add(clearMenuItem);
-		menu.add(quitMenuItem);
-		JMenuBar menuBar = new JMenuBar();
-		menuBar.add(menu);
-		frame.setJMenuBar(menuBar);
-
-		frame.pack();
-		frame.setVisible(true);
+		if (!headless) {
+			if (gui == null) {
+				gui = new CardGameServerGUI(serverName);
+				logger.setConsole(gui::println);
+			}
+		} else if (!logger.hasLogFile()) {
+			logger.setConsole(System.out::println);
+		}
 	} // buildGUI
 
+	/**
+	 * Sets whether the threads serving the blocking connections are virtual
+	 * threads or platform threads. Virtual threads need Java 21 or later; on
+	 * older JVMs platform threads are used regardless of this setting.
+	 * 
+	 * @param useVirtualThreads
+	 *            true to serve each connection on a virtual thread; false to
+	 *            serve it on a platform thread
+	 */
+	public void setUseVirtualThreads(boolean useVirtualThreads) {
+		if (useVirtualThreads) {
+			connectionThreadFactory = createVirtualThreadFactory();
+			if (connectionThreadFactory == null) {
+				println("Virtual threads are not supported by this JVM: uses platform threads instead.");
+			}
+		} else {
+			connectionThreadFactory = null;
+		}
+	}
+
+	/**
+	 * Returns true if the connections are served by virtual threads.
+	 * 
+	 * @return true if the connections are served by virtual threads; false
+	 *         otherwise
+	 */
+	public boolean isUsingVirtualThreads() {
+		return connectionThreadFactory != null;
+	}
+
+	/**
+	 * Creates and returns a factory for virtual threads. The factory is looked
+	 * up reflectively so that the server still builds and runs on JVMs
+	 * without virtual threads.
+	 * 
+	 * @return a factory for virtual threads, or null if they are not supported
+	 */
+	private static ThreadFactory createVirtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Method factory = Class.forName("java.lang.Thread$Builder")
+					.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a thread for serving a connection, which is a virtual thread if
+	 * enabled.
+	 * 
+	 * @param task
+	 *            the task to be run by the thread
+	 * @return the new (unstarted) thread
+	 */
+	private Thread newConnectionThread(Runnable task) {
+		if (connectionThreadFactory != null) {
+			return connectionThreadFactory.newThread(task);
+		} else {
+			return new Thread(task);
+		}
+	}
+
+	/**
+	 * Sets the high-water marks of the outbound queues of new connections.
+	 * 
+	 * @param dropHighWaterMark
+	 *            the queue depth at which user chat messages to a client are
+	 *            dropped
+	 * @param disconnectHighWaterMark
+	 *            the queue depth at which a client is disconnected
+	 */
+	public void setOutboundHighWaterMarks(int dropHighWaterMark,
+			int disconnectHighWaterMark) {
+		this.dropHighWaterMark = dropHighWaterMark;
+		this.disconnectHighWaterMark = disconnectHighWaterMark;
+	}
+
+	/**
+	 * Sets the maximum number of pending connections queued by the server
+	 * socket. Connections beyond the backlog are refused by the operating
+	 * system. Must be called before the server is started.
+	 * 
+	 * @param acceptBacklog
+	 *            the maximum number of pending connections
+	 */
+	public void setAcceptBacklog(int acceptBacklog) {
+		this.acceptBacklog = acceptBacklog;
+	}
+
+	/**
+	 * Returns the maximum number of pending connections queued by the server
+	 * socket.
+	 * 
+	 * @return the maximum number of pending connections
+	 */
+	public int getAcceptBacklog() {
+		return acceptBacklog;
+	}
+
+	/**
+	 * Limits the rate at which new connections are accepted. Connections
+	 * beyond the rate wait in the backlog of the server socket, so that a
+	 * reconnect storm costs no threads. Must be called before the server is
+	 * started.
+	 * 
+	 * @param connectionsPerSecond
+	 *            the number of connections accepted per second, or 0 for no
+	 *            limit
+	 * @param maxBurst
+	 *            the number of connections that can be accepted at once after
+	 *            an idle period
+	 */
+	public void setMaxAcceptRate(int connectionsPerSecond, int maxBurst) {
+		if (connectionsPerSecond > 0) {
+			acceptRateLimiter = new AcceptRateLimiter(connectionsPerSecond,
+					maxBurst);
+		} else {
+			acceptRateLimiter = null;
+		}
+	}
+
+	/**
+	 * Returns the limiter of the rate at which connections are accepted.
+	 * 
+	 * @return the limiter, or null if the rate is not limited
+	 */
+	AcceptRateLimiter getAcceptRateLimiter() {
+		return acceptRateLimiter;
+	}
+
+	/**
+	 * Sets the heartbeats of the connections. A client which has been silent
+	 * for heartbeatInterval milliseconds is sent a PING, and is disconnected
+	 * once it has been silent for idleTimeout milliseconds. Clients which have
+	 * never answered a PING (e.g., old clients not knowing the message) are
+	 * sent PINGs but never disconnected. Must be called before the server is
+	 * started.
+	 * 
+	 * @param heartbeatInterval
+	 *            the time a client may be silent before it is sent a PING, or
+	 *            0 to disable the heartbeats
+	 * @param idleTimeout
+	 *            the time a client may be silent before it is disconnected
+	 */
+	public void setHeartbeat(long heartbeatInterval, long idleTimeout) {
+		this.heartbeatInterval = heartbeatInterval;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Starts advancing the timer wheel tracking the idle deadlines of the
+	 * connections, if the heartbeats are enabled.
+	 */
+	private void startHeartbeats() {
+		if (heartbeatInterval > 0) {
+			timer.scheduleAtFixedRate(idleTimers::tick, IDLE_TIMER_TICK,
+					IDLE_TIMER_TICK, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Schedules the next check of the specified connection for being idle.
+	 * 
+	 * @param connection
+	 *            the connection to be checked
+	 * @param delay
+	 *            the delay (in nanoseconds) of the check
+	 */
+	private void scheduleIdleCheck(ClientConnection connection, long delay) {
+		connection.setIdleTimeout(idleTimers.schedule(new IdleCheck(
+				connection), delay, TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Sets the time for which the seat of a player who loses the connection
+	 * in the middle of a game is held. A client reconnecting within this time
+	 * resumes its seat with the session token issued when it joined, and the
+	 * game goes on; otherwise the player leaves the game.
+	 * 
+	 * @param sessionGracePeriod
+	 *            the time (in milliseconds) for which a seat is held, or 0 to
+	 *            free it at once
+	 */
+	public void setSessionGracePeriod(long sessionGracePeriod) {
+		this.sessionGracePeriod = sessionGracePeriod;
+	}
+
+	/**
+	 * Returns the time for which the seat of a disconnected player is held.
+	 * 
+	 * @return the time (in milliseconds) for which a seat is held
+	 */
+	public long getSessionGracePeriod() {
+		return sessionGracePeriod;
+	}
+
+	/**
+	 * Sets the time by which the views sent to the spectators lag behind the
+	 * game, so that a spectator cannot tip off a player. Must be called
+	 * before the server is started.
+	 * 
+	 * @param spectatorDelay
+	 *            the delay (in milliseconds) of the views, or 0 to send them
+	 *            at once
+	 */
+	public void setSpectatorDelay(long spectatorDelay) {
+		this.spectatorDelay = spectatorDelay;
+	}
+
+	/**
+	 * Returns the time by which the views sent to the spectators lag behind
+	 * the game.
+	 * 
+	 * @return the delay (in milliseconds) of the views
+	 */
+	public long getSpectatorDelay() {
+		return spectatorDelay;
+	}
+
+	/**
+	 * Sets the maximum number of spectators of a table.
+	 * 
+	 * @param maxNumOfSpectators
+	 *            the maximum number of spectators of a table, or 0 to refuse
+	 *            all spectators
+	 */
+	public void setMaxNumOfSpectators(int maxNumOfSpectators) {
+		this.maxNumOfSpectators = maxNumOfSpectators;
+	}
+
+	/**
+	 * Returns the maximum number of spectators of a table.
+	 * 
+	 * @return the maximum number of spectators of a table
+	 */
+	public int getMaxNumOfSpectators() {
+		return maxNumOfSpectators;
+	}
+
+	/**
+	 * Returns the number of connections watching the tables.
+	 * 
+	 * @return the number of spectators
+	 */
+	public int getNumOfSpectators() {
+		return numOfSpectators.get();
+	}
+
+	/**
+	 * Runs the specified delivery to the spectators of a table on the
+	 * low-priority fan-out thread, after the delay of the views. Deliveries
+	 * run in the order they are posted.
+	 * 
+	 * @param task
+	 *            the delivery to the spectators
+	 */
+	void fanOut(Runnable task) {
+		if (spectatorDelay > 0) {
+			timer.schedule(() -> spectatorExecutor.execute(task),
+					spectatorDelay, TimeUnit.MILLISECONDS);
+		} else {
+			spectatorExecutor.execute(task);
+		}
+	}
+
+	/**
+	 * Moves the specified connection to the spectators of the specified
+	 * table, or of the busiest table.
+	 * 
+	 * @param connection
+	 *            the connection of the spectator
+	 * @param tableID
+	 *            the ID of the table, or -1 for the busiest table
+	 */
+	private void watchTable(ClientConnection connection, int tableID) {
+		CardGameTable table = null;
+		tablesLock.lock();
+		try {
+			if (tableID >= 0 && tableID < tables.size()) {
+				table = tables.get(tableID);
+			} else if (tableID < 0) {
+				for (CardGameTable t : tables) {
+					if (table == null
+							|| t.getNumOfPlayers() > table.getNumOfPlayers()) {
+						table = t;
+					}
+				}
+			}
+		} finally {
+			tablesLock.unlock();
+		}
+		if (table == null || connection.isSpectator()
+				|| maxNumOfSpectators <= 0) {
+			refuseWatch(connection);
+			return;
+		}
+
+		// any later message from this connection goes to the watched table
+		CardGameTable previousTable = connection.getTable();
+		connection.setSpectator(true);
+		connection.setTable(table);
+		table.addSpectator(connection, previousTable);
+	} // watchTable
+
+	/**
+	 * Tells the server that a connection has started watching a table.
+	 * 
+	 * @param connection
+	 *            the connection of the spectator
+	 * @param waiting
+	 *            true if the connection was waiting for a seat, rather than
+	 *            seated at a table
+	 */
+	void spectatorAdded(ClientConnection connection, boolean waiting) {
+		numOfSpectators.incrementAndGet();
+		connection.setOutboundHighWaterMarks(SPECTATOR_DROP_HIGH_WATER_MARK,
+				disconnectHighWaterMark);
+		if (waiting) {
+			connections.add(connection);
+			connectionAdded(connection);
+		}
+	}
+
+	/**
+	 * Tells the server that a connection has stopped watching its table.
+	 * 
+	 * @param connection
+	 *            the connection of the spectator
+	 */
+	void spectatorRemoved(ClientConnection connection) {
+		numOfSpectators.decrementAndGet();
+		connectionRemoved(connection);
+	}
+
+	/**
+	 * Tells a client that it cannot watch the table it asked for. A client
+	 * which was not seated anywhere is rejected, as the server is full.
+	 * 
+	 * @param connection
+	 *            the connection to the client
+	 */
+	void refuseWatch(ClientConnection connection) {
+		println(LogLevel.WARN, "Cannot let the client at "
+				+ connection.getRemoteSocketAddress() + " watch a table");
+		try {
+			connection.sendMessage(new CardGameMessage(CardGameMessage.WATCH,
+					-1, null));
+		} catch (Exception ex) {
+			println(LogLevel.ERROR, "Error in sending a message to the client at "
+					+ connection.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+		if (connection.getTable() == null) {
+			rejectConnection(connection);
+		}
+	} // refuseWatch
+
+	/**
+	 * Issues a new session token for a player seated at the specified table.
+	 * 
+	 * @param table
+	 *            the table where the player is seated
+	 * @return the session token
+	 */
+	String registerSession(CardGameTable table) {
+		byte[] bytes = new byte[16];
+		sessionRandom.nextBytes(bytes);
+		StringBuilder token = new StringBuilder(32);
+		for (byte b : bytes) {
+			token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(
+					Character.forDigit(b & 0xF, 16));
+		}
+		sessions.put(token.toString(), table);
+		return token.toString();
+	}
+
+	/**
+	 * Revokes a session token once its player has left the game.
+	 * 
+	 * @param token
+	 *            the session token
+	 */
+	void unregisterSession(String token) {
+		sessions.remove(token);
+	}
+
+	/**
+	 * Tells the server that the seat of a disconnected player is held.
+	 */
+	void seatHeld() {
+		numOfHeldSeats.incrementAndGet();
+	}
+
+	/**
+	 * Tells the server that a held seat has been freed.
+	 */
+	void seatReleased() {
+		numOfHeldSeats.decrementAndGet();
+	}
+
+	/**
+	 * Tells the server that a held seat has been resumed by the specified
+	 * connection.
+	 * 
+	 * @param connection
+	 *            the connection resuming the seat
+	 * @param waiting
+	 *            true if the connection was waiting for a seat, rather than
+	 *            seated at another table
+	 */
+	void seatResumed(ClientConnection connection, boolean waiting) {
+		numOfHeldSeats.decrementAndGet();
+		if (waiting) {
+			connections.add(connection);
+			connectionAdded(connection);
+		}
+	}
+
+	/**
+	 * Resumes the session of the specified token on the specified connection,
+	 * which moves it to its held seat.
+	 * 
+	 * @param connection
+	 *            the connection resuming the session
+	 * @param token
+	 *            the session token
+	 */
+	private void resumeSession(ClientConnection connection, String token) {
+		CardGameTable table = token == null ? null : sessions.get(token);
+		CardGameTable previousTable = connection.getTable();
+		if (table == null) {
+			refuseResume(connection);
+			return;
+		}
+		// any later message from this connection goes to its held seat
+		connection.setTable(table);
+		table.resumeConnection(connection, token, previousTable);
+	} // resumeSession
+
+	/**
+	 * Tells a client that its session cannot be resumed. A client which was
+	 * not seated anywhere is rejected, as the server is full.
+	 * 
+	 * @param connection
+	 *            the connection to the client
+	 */
+	void refuseResume(ClientConnection connection) {
+		println(LogLevel.WARN, "Cannot resume a session for the client at "
+				+ connection.getRemoteSocketAddress());
+		try {
+			connection.sendMessage(new CardGameMessage(CardGameMessage.RESUME,
+					-1, null));
+		} catch (Exception ex) {
+			println(LogLevel.ERROR, "Error in sending a message to the client at "
+					+ connection.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+		if (connection.getTable() == null) {
+			rejectConnection(connection);
+		}
+	} // refuseResume
+
+	/**
+	 * Returns the timer shared by the delayed tasks of the server. Tasks run
+	 * on a single thread and must not block.
+	 * 
+	 * @return the timer of the server
+	 */
+	ScheduledExecutorService getTimer() {
+		return timer;
+	}
+
 	/**
 	 * Starts the server at the specified port
 	 * 
@@ -105,92 +767,101 @@ public class CardGameServer {
 	 */
 	public void start(int port) {
 		// start the server
+		buildGUI();
 		try {
 			// creates a ServerScoket
-			ServerSocket serverSocket = new ServerSocket(port);
+			ServerSocket serverSocket = new ServerSocket(port, acceptBacklog);
 			println("Starts up the server at localhost:"
 					+ serverSocket.getLocalPort());
+			startMetrics(serverSocket.getLocalPort());
+			startHeartbeats();
 			serverUp = true;
 			while (serverUp) {
+				// leaves the clients in the backlog if connecting too fast
+				if (acceptRateLimiter != null) {
+					acceptRateLimiter.acquire();
+				}
 				// waits for clients to connect
 				Socket clientSocket = serverSocket.accept();
 				addConnection(clientSocket);
 			} // while
 			serverSocket.close();
 		} catch (Exception ex) {
-			println("Error in starting up the server at localhost:" + port);
+			println(LogLevel.ERROR, "Error in starting up the server at localhost:" + port);
 			if (!silentMode) ex.printStackTrace();
 		}
 	} // start
 
 	/**
-	 * Parses the incoming message from the specified client.
+	 * Starts the server at the specified port using the non-blocking
+	 * transport, in which a small fixed number of I/O threads serve all the
+	 * connections. Clients must ask for the binary protocol, as BigTwoClient
+	 * and BotClient do; Java serialization streams are only served by the
+	 * blocking transport.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to the specified client
-	 * @param message
-	 *            the message received from the specified client
+	 * @param port
+	 *            the specified port at which the server starts
+	 * @param numOfIoThreads
+	 *            the number of I/O threads
 	 */
-	private synchronized void parseMessage(Socket clientSocket,
-			CardGameMessage message) {
-		// updates the playerID
-		for (int i = 0; i < maxNumOfPlayers; i++) {
-			if (clientSockets[i] == clientSocket) {
-				message.setPlayerID(i);
-				break;
-			}
-		}
-
-		// parses the message based on it type
-		switch (message.getType()) {
-		case CardGameMessage.JOIN:
-			// adds a player to the game
-			addPlayer(clientSocket, (String) message.getData());
-			break;
-		case CardGameMessage.READY:
-			// marks the specified player as ready for a new game
-			setReadyState(clientSocket);
-			break;
-		case CardGameMessage.MOVE:
-			println("Broadcasts a \"MOVE\" message from "
-					+ clientSocket.getRemoteSocketAddress());
-			// broadcast the MOVE message to all clients
-			broadcastMessage(message);
-			break;
-		case CardGameMessage.MSG:
-			println("Broadcasts a user message from "
-					+ clientSocket.getRemoteSocketAddress());
-			// broadcast the user message to all clients
-			broadcastUserMessage(clientSocket, (String) message.getData());
-			break;
-		default:
-			println("Wrong message type: " + message.getType());
-			// invalid message
-			break;
+	public void startNonBlocking(int port, int numOfIoThreads) {
+		NioServerTransport transport = new NioServerTransport(this,
+				numOfIoThreads);
+		buildGUI();
+		try {
+			println("Starts up the server at localhost:" + port + " with "
+					+ numOfIoThreads + " I/O threads");
+			startMetrics(port);
+			startHeartbeats();
+			serverUp = true;
+			transport.start(port);
+		} catch (Exception ex) {
+			println(LogLevel.ERROR, "Error in starting up the server at localhost:" + port);
+			if (!silentMode) ex.printStackTrace();
 		}
-	} // parseMessage
+	} // startNonBlocking
 
 	/**
-	 * Broadcasts the specified message to all clients.
+	 * Parses the incoming message from the specified client, which is handled
+	 * by the table where the client is seated.
 	 * 
+	 * @param connection
+	 *            the connection to the specified client
 	 * @param message
-	 *            the specified message to be broadcast to all clients
-	 */
-	private synchronized void broadcastMessage(CardGameMessage message) {
-		if (numOfPlayers > 0) {
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] != null && clientOutputStreams[i] != null) {
-					try {
-						clientOutputStreams[i].writeObject(message);
-					} catch (Exception ex) {
-						println("Error in broadcasting a message to the client at "
-								+ clientSockets[i].getRemoteSocketAddress());
-						if (!silentMode) ex.printStackTrace();
-					}
-				}
+	 *            the message received from the specified client
+	 */
+	void parseMessage(ClientConnection connection, CardGameMessage message) {
+		metrics.messageReceived(message.getType());
+		connection.messageReceived();
+		// heartbeats are answered here and never reach the table
+		if (message.getType() == CardGameMessage.PONG) {
+			connection.setHeartbeatSupported();
+			return;
+		} else if (message.getType() == CardGameMessage.PING) {
+			try {
+				connection.sendMessage(new CardGameMessage(
+						CardGameMessage.PONG, -1, null));
+			} catch (Exception ex) {
+				println(LogLevel.ERROR, "Error in sending a PONG message to the client at "
+						+ connection.getRemoteSocketAddress());
+				if (!silentMode) ex.printStackTrace();
 			}
+			return;
 		}
-	} // broadcastMessage
+		if (message.getType() == CardGameMessage.RESUME) {
+			resumeSession(connection, message.getData() instanceof String
+					? (String) message.getData() : null);
+			return;
+		} else if (message.getType() == CardGameMessage.WATCH) {
+			watchTable(connection, message.getData() instanceof Integer
+					? (Integer) message.getData() : -1);
+			return;
+		}
+		CardGameTable table = connection.getTable();
+		if (table != null) {
+			table.parseMessage(connection, message, System.nanoTime());
+		}
+	} // parseMessage
 
 	/**
 	 * Adds a new socket connection to the server
@@ -198,159 +869,188 @@ public class CardGameServer {
 	 * @param clientSocket
 	 *            the socket connection to be added to the server
 	 */
-	private synchronized void addConnection(Socket clientSocket) {
-		// adds this connection to the server if the server is not full
-		if (numOfPlayers < maxNumOfPlayers) {
-			// locates the first empty slot for the new connection
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == null) {
-					try {
-						// creates an ObjectOutputStream for this client socket
-						ObjectOutputStream oostream = new ObjectOutputStream(
-								clientSocket.getOutputStream());
-
-						clientSockets[i] = clientSocket;
-						clientOutputStreams[i] = oostream;
-						clientNames[i] = null;
-						clientReadyStates[i] = false;
-						numOfPlayers++;
-						println("Establishes a connection with a client at "
-								+ clientSocket.getRemoteSocketAddress());
+	private void addConnection(Socket clientSocket) {
+		// creates a thread for negotiating the protocol with this client and
+		// receiving messages from it, so that a slow handshake never blocks
+		// the accepting thread
+		Thread t = newConnectionThread(new ClientHandler(clientSocket));
+		t.start();
+	} // addConnection
 
-						// creates a thread for receiving messages from this
-						// client
-						Thread t = new Thread(new ClientHandler(clientSocket));
-						t.start();
+	/**
+	 * Adds a new connection to the server. The connection is seated at the
+	 * first table with an empty seat, and a new table is opened if all the
+	 * tables are full. If the server is full while seats are held for
+	 * disconnected players, the connection is given some time for resuming
+	 * one of them before it is rejected.
+	 * 
+	 * @param connection
+	 *            the connection to be added to the server
+	 * @return true if the connection is added; false if the server is full
+	 */
+	boolean addConnection(final ClientConnection connection) {
+		connection.setOutboundHighWaterMarks(dropHighWaterMark,
+				disconnectHighWaterMark);
+		connection.setMetrics(metrics);
+		tablesLock.lock();
+		try {
+			// registers the connection first, as it may be removed again as
+			// soon as it is seated
+			connections.add(connection);
+			for (CardGameTable table : tables) {
+				if (table.addConnection(connection)) {
+					connectionAdded(connection);
+					return true;
+				}
+			}
 
-						// sends the player list to the new player
-						oostream.writeObject(new CardGameMessage(
-								CardGameMessage.PLAYER_LIST, i, clientNames));
-					} catch (Exception ex) {
-						println("Error in establishing a connection with a client at "
-								+ clientSocket.getRemoteSocketAddress());
-						if (!silentMode) ex.printStackTrace();
-					}
-					break;
+			if (tables.size() < maxNumOfTables) {
+				CardGameTable table = new CardGameTable(this, tables.size(),
+						maxNumOfPlayers, tableExecutor);
+				tables.add(table);
+				println("Opens table " + table.getTableID());
+				if (table.addConnection(connection)) {
+					connectionAdded(connection);
+					return true;
 				}
-			} // for
-		} else {
-			// Max. no. of players reached
-			println("Server is full: cannot establish a connection with a client at "
-					+ clientSocket.getRemoteSocketAddress());
+			}
+			connections.remove(connection);
+		} finally {
+			tablesLock.unlock();
+		}
 
-			// creates a thread for sending a FULL message to this client, waits
-			// for 1000 milliseconds and closes the socket
-			Thread t = new Thread(new ClientHandler2(clientSocket));
-			t.start();
+		if (numOfHeldSeats.get() > 0) {
+			// a held seat may be waiting for this client: lets it send a
+			// RESUME message before rejecting it
+			timer.schedule(() -> {
+				if (connection.getTable() == null) {
+					rejectConnection(connection);
+				}
+			}, HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+			return true;
 		}
 
+		// Max. no. of tables and players reached
+		metrics.connectionRejected();
+		println("Server is full: cannot establish a connection with a client at "
+				+ connection.getRemoteSocketAddress());
+		return false;
 	} // addConnection
 
+	/**
+	 * Counts a connection which has been seated, and starts checking it for
+	 * being idle if the heartbeats are enabled.
+	 * 
+	 * @param connection
+	 *            the connection which has been seated
+	 */
+	private void connectionAdded(ClientConnection connection) {
+		metrics.connectionAccepted();
+		if (heartbeatInterval > 0) {
+			scheduleIdleCheck(connection,
+					TimeUnit.MILLISECONDS.toNanos(heartbeatInterval));
+		}
+	}
+
 	/**
 	 * Removes a connection from the server (possibly due to connection loss).
 	 * 
-	 * @param clientSocket
-	 *            the socket connection being removed from the server
-	 */
-	private synchronized void removeConnection(Socket clientSocket) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					String name = clientNames[i];
-
-					clientSockets[i] = null;
-					clientOutputStreams[i] = null;
-					clientNames[i] = null;
-					clientReadyStates[i] = false;
-					numOfPlayers--;
-
-					println(name + " (" + clientSocket.getRemoteSocketAddress()
-							+ ") leaves the game.");
-
-					String remoteAddress = clientSocket
-							.getRemoteSocketAddress().toString();
-
-					// broadcasts a message about the leaving of this player
-					broadcastMessage(new CardGameMessage(CardGameMessage.QUIT,
-							i, remoteAddress));
-					break;
-				}
-			}
+	 * @param connection
+	 *            the connection being removed from the server
+	 */
+	void removeConnection(ClientConnection connection) {
+		CardGameTable table = connection.getTable();
+		if (table != null) {
+			table.removeConnection(connection);
 		}
 	} // removeConnection
 
 	/**
-	 * adds a player to the game.
+	 * Tells the server that a connection has left its table. Called by the
+	 * table.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to the player who is joining the game
-	 * @param name
-	 *            the name of the player who is joining the game
-	 */
-	private synchronized void addPlayer(Socket clientSocket, String name) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					// updates the name of the new player
-					clientNames[i] = name;
-
-					println(name + " (" + clientSocket.getRemoteSocketAddress()
-							+ ") joins the game.");
-
-					// broadcasts a message about this player joining the game
-					broadcastMessage(new CardGameMessage(CardGameMessage.JOIN,
-							i, name));
-					break;
-				}
-			}
+	 * @param connection
+	 *            the connection which has left its table
+	 */
+	void connectionRemoved(ClientConnection connection) {
+		connections.remove(connection);
+		HashedTimerWheel.Timeout timeout = connection.getIdleTimeout();
+		if (timeout != null) {
+			timeout.cancel();
 		}
-	} // addPlayer
+	}
 
 	/**
-	 * Marks the specified player as ready for a new game.
+	 * Returns the number of connections seated at or watching the tables.
 	 * 
-	 * @param clientSocket
-	 *            the socket connection to the player who becomes ready for a
-	 *            new game
-	 */
-	private synchronized void setReadyState(Socket clientSocket) {
-		if (numOfPlayers > 0) {
-			// locates the client socket in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					clientReadyStates[i] = true;
-					println(clientNames[i] + " ("
-							+ clientSocket.getRemoteSocketAddress()
-							+ " ) is ready for the next game.");
-					broadcastMessage(new CardGameMessage(CardGameMessage.READY,
-							i, null));
-					break;
-				}
-			}
+	 * @return the number of connections seated at or watching the tables
+	 */
+	public int getNumOfConnections() {
+		return connections.size();
+	}
+
+	/**
+	 * Returns a read-only view of the connections seated at or watching the
+	 * tables.
+	 * 
+	 * @return the connections seated at or watching the tables
+	 */
+	public Set<ClientConnection> getConnections() {
+		return Collections.unmodifiableSet(connections);
+	}
+
+	/**
+	 * Returns the total number of messages queued for all the clients but not
+	 * yet written.
+	 * 
+	 * @return the total depth of the outbound queues
+	 */
+	public long getTotalOutboundQueueDepth() {
+		long depth = 0;
+		for (ClientConnection connection : connections) {
+			depth += connection.getOutboundQueueDepth();
 		}
+		return depth;
+	}
 
-		// checks if all players are ready
-		if (numOfPlayers == maxNumOfPlayers) {
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientReadyStates[i] == false) {
-					// returns if any of the players is not ready
-					return;
-				}
-			}
+	/**
+	 * Returns the depth of the deepest outbound queue.
+	 * 
+	 * @return the depth of the deepest outbound queue
+	 */
+	public int getMaxOutboundQueueDepth() {
+		int depth = 0;
+		for (ClientConnection connection : connections) {
+			depth = Math.max(depth, connection.getOutboundQueueDepth());
+		}
+		return depth;
+	}
 
-			// resets the ready states of all the players for the next game
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				clientReadyStates[i] = false;
-			}
+	/**
+	 * Returns the number of user chat messages dropped for the connected
+	 * clients because their outbound queues were too deep.
+	 * 
+	 * @return the number of dropped messages
+	 */
+	public long getNumOfDroppedMessages() {
+		long count = 0;
+		for (ClientConnection connection : connections) {
+			count += connection.getNumOfDroppedMessages();
+		}
+		return count;
+	}
 
-			// creates a new deck, shuffles the deck, and starts a new game
-			Deck deck = createDeck();
-			deck.shuffle();
-			println("All players are ready. Game starts.");
-			broadcastMessage(new CardGameMessage(CardGameMessage.START, -1,
-					deck));
+	/**
+	 * Returns the number of tables opened by this server.
+	 * 
+	 * @return the number of tables opened by this server
+	 */
+	public int getNumOfTables() {
+		tablesLock.lock();
+		try {
+			return tables.size();
+		} finally {
+			tablesLock.unlock();
 		}
 	}
 
@@ -364,33 +1064,91 @@ public class CardGameServer {
 		return new Deck();
 	}
 
-	private synchronized void broadcastUserMessage(Socket clientSocket,
-			String msg) {
-		if (numOfPlayers > 0) {
-			// locates the client in the array
-			for (int i = 0; i < maxNumOfPlayers; i++) {
-				if (clientSockets[i] == clientSocket) {
-					String longMsg = clientNames[i] + " ("
-							+ clientSocket.getRemoteSocketAddress() + "): "
-							+ msg;
-					broadcastMessage(new CardGameMessage(CardGameMessage.MSG,
-							i, longMsg));
-					break;
-				}
-			}
-		}
+	/**
+	 * Creates and returns the rules enforced at a table, or null if the moves
+	 * are not validated by the server and are simply broadcast to all the
+	 * clients. Overrides this method to validate the moves of a card game.
+	 * 
+	 * @return the rules enforced at a table, or null
+	 */
+	public CardGameRules createRules() {
+		return null;
+	}
+
+	/**
+	 * Logs the specified message of the server at the INFO level.
+	 * 
+	 * @param msg
+	 *            the message to be logged
+	 */
+	void println(String msg) {
+		logger.log(LogLevel.INFO, "server", msg);
 	}
 
 	/**
-	 * Prints the specified message to the text area.
+	 * Logs the specified message of the server at the specified level.
 	 * 
+	 * @param level
+	 *            the level of the message
 	 * @param msg
+	 *            the message to be logged
 	 */
-	private void println(String msg) {
-		textArea.append(msg + "\n");
-		textArea.setCaretPosition(textArea.getDocument().getLength());
+	void println(LogLevel level, String msg) {
+		logger.log(level, "server", msg);
 	}
 
+	/**
+	 * Logs the specified message of a table at the specified level.
+	 * 
+	 * @param level
+	 *            the level of the message
+	 * @param tableID
+	 *            the ID of the table
+	 * @param msg
+	 *            the message to be logged
+	 */
+	void println(LogLevel level, int tableID, String msg) {
+		logger.log(level, "table-" + tableID, msg);
+	}
+
+	/**
+	 * Returns true if messages of the specified level are logged, so that
+	 * building a message can be skipped if they are not.
+	 * 
+	 * @param level
+	 *            the level to be checked
+	 * @return true if the level is logged; false otherwise
+	 */
+	boolean isLogging(LogLevel level) {
+		return logger.isEnabled(level);
+	}
+
+	/**
+	 * Sends a FULL message to a client which cannot be seated, and closes its
+	 * connection after REJECTION_CLOSE_DELAY milliseconds on the timer of the
+	 * server, so that no thread waits for the client. The writer thread of a
+	 * blocking connection stops as soon as the FULL message is written.
+	 * 
+	 * @param connection
+	 *            the connection to the client
+	 */
+	private void rejectConnection(final ClientConnection connection) {
+		try {
+			// sends a FULL message to the client
+			connection.sendMessage(new CardGameMessage(CardGameMessage.FULL,
+					-1, null));
+		} catch (Exception ex) {
+			println(LogLevel.ERROR, "Error in sending a FULL message to the client at "
+					+ connection.getRemoteSocketAddress());
+			if (!silentMode) ex.printStackTrace();
+		}
+		if (connection instanceof SocketConnection) {
+			((SocketConnection) connection).stopWriter();
+		}
+		timer.schedule(connection::close, REJECTION_CLOSE_DELAY,
+				TimeUnit.MILLISECONDS);
+	} // rejectConnection
+
 	/**
 	 * This inner class is used for receiving incoming messages from a client
 	 * 
@@ -398,8 +1156,11 @@ public class CardGameServer {
 	 *
 	 */
 	private class ClientHandler implements Runnable {
+		private SocketConnection connection; // connection to the client
 		private Socket clientSocket; // socket connection to the client
 		private ObjectInputStream oistream; // ObjectInputStream of the client
+		// DataInputStream of the client speaking the binary protocol
+		private DataInputStream distream;
 
 		/**
 		 * Creates and returns an instance of the ClientHandler class.
@@ -409,110 +1170,208 @@ public class CardGameServer {
 		 */
 		public ClientHandler(Socket clientSocket) {
 			this.clientSocket = clientSocket;
+		} // constructor
+
+		// implementation of method from the Runnable interface
+		public void run() {
 			try {
-				// creates an ObjectInputStream and chains it to the InputStream
-				// of the client socket
-				oistream = new ObjectInputStream(clientSocket.getInputStream());
+				negotiate();
 			} catch (Exception ex) {
-				println("Error in creating an ObjectInputStream for the client at "
+				println(LogLevel.ERROR, "Error in establishing a connection with a client at "
 						+ clientSocket.getRemoteSocketAddress());
 				if (!silentMode) ex.printStackTrace();
+				try {
+					clientSocket.close();
+				} catch (IOException ex2) {
+					// the socket is unusable anyway
+				}
+				return;
+			}
+
+			if (!addConnection(connection)) {
+				// sends a FULL message to this client and closes the socket
+				// later, without holding this thread
+				rejectConnection(connection);
+				return;
 			}
-		} // constructor
 
-		// implementation of method from the Runnable interface
-		public void run() {
 			CardGameMessage message;
 			try {
 				// waits for messages from the client
-				while ((message = (CardGameMessage) oistream.readObject()) != null) {
-					println("Message received from "
-							+ clientSocket.getRemoteSocketAddress());
-					parseMessage(clientSocket, message);
+				while ((message = readMessage()) != null) {
+					if (isLogging(LogLevel.DEBUG)) {
+						println(LogLevel.DEBUG, "Message received from "
+								+ clientSocket.getRemoteSocketAddress());
+					}
+					parseMessage(connection, message);
 				} // close while
 			} catch (Exception ex) {
-				println("Error in receiving messages from the client at "
+				println(LogLevel.ERROR, "Error in receiving messages from the client at "
 						+ clientSocket.getRemoteSocketAddress());
 				if (!silentMode) ex.printStackTrace();
 				// possible connection loss, removes the connection
-				removeConnection(clientSocket);
+				removeConnection(connection);
 			}
 		} // run
+
+		/**
+		 * Tells a client asking for the binary protocol from a client sending
+		 * a Java serialization stream by the first bytes received, and creates
+		 * the connection and the input stream for the protocol.
+		 */
+		private void negotiate() throws IOException {
+			clientSocket.setSoTimeout(HANDSHAKE_TIMEOUT);
+			PushbackInputStream istream = new PushbackInputStream(
+					new CountingInputStream(clientSocket.getInputStream()), 2);
+			int b0 = istream.read();
+			int b1 = istream.read();
+			if (b1 < 0) {
+				throw new EOFException("Connection closed by the client");
+			}
+
+			if (BinaryMessageCodec.isMagic(b0, b1)) {
+				int version = Math.min(istream.read(),
+						BinaryMessageCodec.VERSION);
+				if (version < 1) {
+					throw new IOException("Unsupported protocol version");
+				}
+				connection = new SocketConnection(clientSocket,
+						CardGameServer.this::newConnectionThread, binaryCodec,
+						version);
+				distream = new DataInputStream(new BufferedInputStream(
+						istream));
+			} else {
+				// an old client, sending a Java serialization stream
+				istream.unread(new byte[] { (byte) b0, (byte) b1 });
+				connection = new SocketConnection(clientSocket,
+						CardGameServer.this::newConnectionThread);
+				oistream = new ObjectInputStream(istream);
+			}
+			clientSocket.setSoTimeout(0);
+		} // negotiate
+
+		/**
+		 * Reads the next message from the client. A frame of the binary
+		 * protocol is recorded as a MessageDecodeEvent from the time its
+		 * length is read, so that the wait for the client is left out; a
+		 * Java serialization stream cannot tell the two apart and is not
+		 * recorded.
+		 */
+		private CardGameMessage readMessage() throws Exception {
+			if (distream != null) {
+				int length = distream.readUnsignedShort();
+				MessageDecodeEvent event = new MessageDecodeEvent();
+				event.begin();
+				CardGameMessage message = binaryCodec.readMessage(distream,
+						length);
+				event.end();
+				if (event.shouldCommit()) {
+					CardGameTable table = connection.getTable();
+					event.tableID = table == null ? -1 : table.getTableID();
+					event.playerID = message.getPlayerID();
+					event.messageType = message.getType();
+					event.commit();
+				}
+				return message;
+			} else {
+				return (CardGameMessage) oistream.readObject();
+			}
+		}
 	} // ClientHandler
 
-	private class ClientHandler2 implements Runnable {
-		private Socket clientSocket; // socket connection to the client
+	/**
+	 * This inner class is used for checking a connection for being idle. It
+	 * runs on the timer wheel of the server, sends a PING to a silent client
+	 * and removes a client which has stopped answering the PINGs.
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class IdleCheck implements Runnable {
+		private final ClientConnection connection; // connection to the client
 
 		/**
-		 * Creates and returns an instance of the ClientHandler2 class.
+		 * Creates and returns an instance of the IdleCheck class.
 		 * 
-		 * @param clientSocket
-		 *            the socket connection to the client
+		 * @param connection
+		 *            the connection to be checked
 		 */
-		public ClientHandler2(Socket clientSocket) {
-			this.clientSocket = clientSocket;
+		public IdleCheck(ClientConnection connection) {
+			this.connection = connection;
 		} // constructor
 
 		// implementation of method from the Runnable interface
 		public void run() {
-			try {
-				// creates an ObjectOutputStream and chains it to the
-				// OutputStream
-				// of the client socket
-				ObjectOutputStream oostream = new ObjectOutputStream(
-						clientSocket.getOutputStream());
-				// sends a FULL message to the client
-				oostream.writeObject(new CardGameMessage(CardGameMessage.FULL,
-						-1, null));
-				oostream.flush();
-			} catch (Exception ex) {
-				println("Error in sending a FULL message to the client at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+			if (!connections.contains(connection)) {
+				return;
 			}
 
-			// sleeps for 1000 milliseconds before closing the socket
-			try {
-				Thread.sleep(1000);
-			} catch (Exception ex) {
-				println("Error in sleeping before closing the client socket at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+			long interval = TimeUnit.MILLISECONDS.toNanos(heartbeatInterval);
+			long idle = System.nanoTime() - connection.getLastReceivedAt();
+			if (idle < interval) {
+				// a message has been received since the last check
+				scheduleIdleCheck(connection, interval - idle);
+				return;
+			}
+
+			long timeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+			if (connection.isHeartbeatSupported() && idle >= timeout) {
+				println(LogLevel.WARN, "Disconnects the client at "
+						+ connection.getRemoteSocketAddress()
+						+ " for being silent for " + idle / 1000000 + " ms");
+				// goes through the same path as a lost connection
+				connection.close();
+				removeConnection(connection);
+				return;
 			}
 
-			// closes the socket
 			try {
-				clientSocket.close();
+				connection.sendMessage(new CardGameMessage(
+						CardGameMessage.PING, -1, null));
 			} catch (Exception ex) {
-				println("Error in closing the client socket at "
-						+ clientSocket.getRemoteSocketAddress());
-				if (!silentMode) ex.printStackTrace();
+				// the connection is lost or evicted, and is being removed
+				return;
+			}
+			if (connection.isHeartbeatSupported()) {
+				scheduleIdleCheck(connection, Math.min(interval, timeout - idle));
+			} else {
+				scheduleIdleCheck(connection, interval);
 			}
 		} // run
-	} // ClientHandler2
+	} // IdleCheck
 
 	/**
-	 * This inner class is used for handling the Clear menu
+	 * This inner class is used for counting the bytes received from a client
+	 * of the blocking transport.
 	 * 
 	 * @author Kenneth Wong
 	 *
 	 */
-	private class ClearMenuItemListener implements ActionListener {
-		public void actionPerformed(ActionEvent e) {
-			textArea.setText("");
+	private class CountingInputStream extends FilterInputStream {
+		/**
+		 * Creates and returns an instance of the CountingInputStream class.
+		 * 
+		 * @param in
+		 *            the stream whose bytes are counted
+		 */
+		public CountingInputStream(InputStream in) {
+			super(in);
 		}
-	} // ClearMenuItemListener
 
-	/**
-	 * This inner class is used for handling the Quit menu
-	 * 
-	 * @author Kenneth Wong
-	 *
-	 */
-	private class QuitMenuItemListener implements ActionListener {
-		public void actionPerformed(ActionEvent e) {
-			frame.dispose();
-			System.exit(0);
+		public int read() throws IOException {
+			int b = in.read();
+			if (b >= 0) {
+				metrics.bytesReceived(1);
+			}
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				metrics.bytesReceived(n);
+			}
+			return n;
 		}
-	} // QuitMenuItemListener
+	} // CountingInputStream
 }
@@ -0,0 +1,117 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JFrame;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+
+/**
+ * This class is used to model the GUI of a card game server, which shows the
+ * log of the server in a console. The console keeps the most recent lines
+ * only. A headless server never loads this class.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class CardGameServerGUI {
+	/**
+	 * The maximum number of lines kept in the console.
+	 */
+	public static final int MAX_NUM_OF_LINES = 2000;
+
+	private JFrame frame; // the main frame of the server
+	private JTextArea textArea; // text area for displaying server states
+
+	/**
+	 * Creates and returns an instance of the CardGameServerGUI class, and
+	 * shows its frame.
+	 * 
+	 * @param serverName
+	 *            the name of the card game server
+	 */
+	public CardGameServerGUI(String serverName) {
+		// build a GUI
+		frame = new JFrame(serverName);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		textArea = new JTextArea(20, 40);
+		textArea.setEditable(false);
+		textArea.setLineWrap(true);
+		textArea.setWrapStyleWord(true);
+		JScrollPane scroller = new JScrollPane(textArea);
+		scroller.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
+		scroller.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+		frame.add(scroller);
+
+		// build the menu bar
+		JMenuItem clearMenuItem = new JMenuItem("Clear console");
+		clearMenuItem.addActionListener(new ClearMenuItemListener());
+		JMenuItem quitMenuItem = new JMenuItem("Quit");
+		quitMenuItem.addActionListener(new QuitMenuItemListener());
+		JMenu menu = new JMenu("Option");
+		menu.add(clearMenuItem);
+		menu.add(quitMenuItem);
+		JMenuBar menuBar = new JMenuBar();
+		menuBar.add(menu);
+		frame.setJMenuBar(menuBar);
+
+		frame.pack();
+		frame.setVisible(true);
+	}
+
+	/**
+	 * Prints the specified line to the console. Can be called from any
+	 * thread, as the console is updated on the event dispatch thread.
+	 * 
+	 * @param line
+	 *            the line to be printed
+	 */
+	public void println(final String line) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				textArea.append(line + "\n");
+				// discards the oldest lines
+				int excess = textArea.getLineCount() - MAX_NUM_OF_LINES;
+				if (excess > 0) {
+					try {
+						textArea.replaceRange("", 0,
+								textArea.getLineStartOffset(excess));
+					} catch (BadLocationException ex) {
+						textArea.setText("");
+					}
+				}
+				textArea.setCaretPosition(textArea.getDocument().getLength());
+			}
+		});
+	}
+
+	/**
+	 * This inner class is used for handling the Clear menu
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class ClearMenuItemListener implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			textArea.setText("");
+		}
+	} // ClearMenuItemListener
+
+	/**
+	 * This inner class is used for handling the Quit menu
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class QuitMenuItemListener implements ActionListener {
+		public void actionPerformed(ActionEvent e) {
+			frame.dispose();
+			System.exit(0);
+		}
+	} // QuitMenuItemListener
+}
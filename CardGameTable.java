@@ -0,0 +1,956 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is used to model a table of a card game server. Each table seats
+ * up to a maximum number of players and holds the state of its own game, so
+ * that a single server can host many games at the same time.
+ * <p>
+ * The state of a table is only touched by its event loop: every operation is
+ * posted to the mailbox of the table and the tasks are run one at a time, in
+ * order, on a thread borrowed from an executor shared by all the tables. No
+ * lock is needed, and tables never contend with each other.
+ * <p>
+ * The table is versioned: every state change it broadcasts (a player joining
+ * or leaving, the start of a game and a legal move) carries the next sequence
+ * number, and a client which has missed one asks for a snapshot of the table
+ * with a SYNC message instead of replaying the history of the game.
+ * <p>
+ * Spectators watch the table without taking a seat. After each state change,
+ * the table takes a view of the game with the hands hidden, encodes it once
+ * and leaves its delivery to the low-priority fan-out thread of the server,
+ * so that however many spectators a table has, the players are served first.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public class CardGameTable {
+	// The server hosting this table
+	private final CardGameServer server;
+	// The ID of this table
+	private final int tableID;
+	// The maximum number of players in a card game
+	private final int maxNumOfPlayers;
+	// Array for holding connections to the clients
+	private ClientConnection[] clientConnections;
+	// Array for holding player names of the clients
+	private String[] clientNames;
+	// Array for holding ready states of the clients
+	private boolean[] clientReadyStates;
+	// Array for holding session tokens of the players who have joined
+	private String[] sessionTokens;
+	// Array for holding the expiry of the seats held for disconnected
+	// players, or null for seats which are not held
+	private ScheduledFuture<?>[] heldSeats;
+	// Array for holding the addresses of the disconnected players
+	private String[] heldAddresses;
+	// version of the table, i.e., the sequence number of the last state
+	// change broadcast
+	private int version = 0;
+	// connections watching this table, changed by the event loop only and
+	// read by the fan-out thread of the server
+	private final CopyOnWriteArrayList<ClientConnection> spectators = new CopyOnWriteArrayList<ClientConnection>();
+	// number of current players, including the ones whose seats are held
+	private int numOfPlayers = 0;
+	// The rules validating the moves, or null if moves are not validated
+	private final CardGameRules rules;
+	// number of seats taken or reserved, readable from any thread
+	private final AtomicInteger numOfSeatsTaken = new AtomicInteger();
+	// The maximum number of tasks run in one go before yielding the thread to
+	// other tables
+	private static final int MAX_TASKS_PER_RUN = 64;
+	// The executor running the event loops of the tables
+	private final Executor executor;
+	// tasks waiting to be run by the event loop of this table
+	private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<Runnable>();
+	// a boolean indicating if the event loop is scheduled on the executor
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+	/**
+	 * Creates and returns an instance of the CardGameTable class.
+	 *
+	 * @param server
+	 *            the server hosting this table
+	 * @param tableID
+	 *            the ID of this table
+	 * @param maxNumOfPlayers
+	 *            the maximum number of players in a card game
+	 * @param executor
+	 *            the executor running the event loop of this table
+	 */
+	public CardGameTable(CardGameServer server, int tableID,
+			int maxNumOfPlayers, Executor executor) {
+		this.server = server;
+		this.tableID = tableID;
+		this.maxNumOfPlayers = maxNumOfPlayers;
+		this.executor = executor;
+
+		// creates arrays for holding client connections, player names, and
+		// ready states
+		clientConnections = new ClientConnection[maxNumOfPlayers];
+		clientNames = new String[maxNumOfPlayers];
+		clientReadyStates = new boolean[maxNumOfPlayers];
+		sessionTokens = new String[maxNumOfPlayers];
+		heldSeats = new ScheduledFuture<?>[maxNumOfPlayers];
+		heldAddresses = new String[maxNumOfPlayers];
+		rules = server.createRules();
+	}
+
+	/**
+	 * Returns the ID of this table.
+	 *
+	 * @return the ID of this table
+	 */
+	public int getTableID() {
+		return tableID;
+	}
+
+	/**
+	 * Returns the number of seats taken at this table. Can be called from any
+	 * thread.
+	 *
+	 * @return the number of seats taken at this table
+	 */
+	public int getNumOfPlayers() {
+		return numOfSeatsTaken.get();
+	}
+
+	/**
+	 * Posts the specified task to the mailbox of this table. The task will be
+	 * run by the event loop of this table after all the tasks posted before.
+	 *
+	 * @param task
+	 *            the task to be run by the event loop of this table
+	 */
+	public void execute(Runnable task) {
+		mailbox.add(task);
+		if (scheduled.compareAndSet(false, true)) {
+			executor.execute(this::runEventLoop);
+		}
+	}
+
+	/**
+	 * Runs the tasks in the mailbox of this table, yielding the thread after
+	 * a bounded number of tasks so that busy tables cannot starve others.
+	 */
+	private void runEventLoop() {
+		Runnable task;
+		int numOfTasks = 0;
+		while (numOfTasks < MAX_TASKS_PER_RUN
+				&& (task = mailbox.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException ex) {
+				println(LogLevel.ERROR, "Error in handling an event");
+				if (!server.silentMode) ex.printStackTrace();
+			}
+			numOfTasks++;
+		}
+
+		scheduled.set(false);
+		// reschedules if tasks are left or arrived after the last poll
+		if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+			executor.execute(this::runEventLoop);
+		}
+	} // runEventLoop
+
+	/**
+	 * Seats a new connection at this table and sends the player list to the
+	 * client, if the table is not full. The seat is reserved immediately;
+	 * the player is seated by the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection to be seated at this table
+	 * @return true if the connection is seated; false if the table is full
+	 */
+	boolean addConnection(final ClientConnection connection) {
+		int seatsTaken;
+		do {
+			seatsTaken = numOfSeatsTaken.get();
+			if (seatsTaken >= maxNumOfPlayers) {
+				return false;
+			}
+		} while (!numOfSeatsTaken.compareAndSet(seatsTaken, seatsTaken + 1));
+
+		// any message from this connection is posted after the seating task
+		connection.setTable(this);
+		execute(() -> seatConnection(connection));
+		return true;
+	} // addConnection
+
+	/**
+	 * Seats a new connection at the first empty seat and sends the player
+	 * list to the client. Runs on the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection to be seated at this table
+	 */
+	private void seatConnection(ClientConnection connection) {
+		// locates the first empty seat for the new connection
+		for (int i = 0; i < maxNumOfPlayers; i++) {
+			if (clientConnections[i] == null && heldSeats[i] == null) {
+				clientConnections[i] = connection;
+				clientNames[i] = null;
+				clientReadyStates[i] = false;
+				numOfPlayers++;
+				println("Establishes a connection with a client at "
+						+ connection.getRemoteSocketAddress());
+
+				try {
+					// sends the player list to the new player
+					CardGameMessage playerList = new CardGameMessage(
+							CardGameMessage.PLAYER_LIST, i, clientNames.clone());
+					playerList.setSequence(version);
+					connection.sendMessage(playerList);
+				} catch (Exception ex) {
+					println(LogLevel.ERROR, "Error in establishing a connection with a client at "
+							+ connection.getRemoteSocketAddress());
+					if (!server.silentMode) ex.printStackTrace();
+				}
+				break;
+			}
+		} // for
+	} // seatConnection
+
+	/**
+	 * Parses the incoming message from the specified client. The message is
+	 * handled by the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection to the specified client
+	 * @param message
+	 *            the message received from the specified client
+	 */
+	void parseMessage(final ClientConnection connection,
+			final CardGameMessage message) {
+		parseMessage(connection, message, System.nanoTime());
+	} // parseMessage
+
+	/**
+	 * Parses the incoming message from the specified client, and records the
+	 * latency from the time the message was parsed to the time its result was
+	 * broadcast to the clients.
+	 *
+	 * @param connection
+	 *            the connection to the specified client
+	 * @param message
+	 *            the message received from the specified client
+	 * @param parsedAt
+	 *            the time (from System.nanoTime()) the message was parsed
+	 */
+	void parseMessage(final ClientConnection connection,
+			final CardGameMessage message, final long parsedAt) {
+		final int type = message.getType();
+		execute(() -> {
+			long dispatchedAt = System.nanoTime();
+			MessageDispatchEvent event = new MessageDispatchEvent();
+			event.begin();
+			handleMessage(connection, message);
+			event.end();
+			server.getMetrics().messageHandled(type,
+					System.nanoTime() - parsedAt);
+			if (event.shouldCommit()) {
+				event.tableID = tableID;
+				event.playerID = message.getPlayerID();
+				event.messageType = type;
+				event.queuedTime = dispatchedAt - parsedAt;
+				event.commit();
+			}
+		});
+	} // parseMessage
+
+	/**
+	 * Handles the incoming message from the specified client. Runs on the
+	 * event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection to the specified client
+	 * @param message
+	 *            the message received from the specified client
+	 */
+	private void handleMessage(ClientConnection connection,
+			CardGameMessage message) {
+		if (connection.isSpectator()) {
+			// a spectator may only catch up with the view of the game
+			if (message.getType() == CardGameMessage.SYNC
+					&& spectators.contains(connection) && rules != null) {
+				EncodedMessage view = createView();
+				server.fanOut(() -> sendView(connection, view));
+			} else {
+				println(LogLevel.DEBUG, "Ignores a message from the spectator at "
+						+ connection.getRemoteSocketAddress());
+			}
+			return;
+		}
+
+		// sets the playerID to the seat of the connection, whatever the client
+		// sent
+		int seat = -1;
+		for (int i = 0; i < maxNumOfPlayers; i++) {
+			if (clientConnections[i] == connection) {
+				seat = i;
+				break;
+			}
+		}
+		if (seat < 0 && message.getType() != CardGameMessage.JOIN) {
+			// e.g., a message still buffered after the connection has left
+			// its seat, or sent before a resume has failed
+			println(LogLevel.WARN, "Drops a \""
+					+ ServerMetrics.getMessageTypeName(message.getType())
+					+ "\" message from " + connection.getRemoteSocketAddress()
+					+ ", which has no seat at this table");
+			return;
+		}
+		message.setPlayerID(seat);
+
+		// parses the message based on it type
+		switch (message.getType()) {
+		case CardGameMessage.JOIN:
+			// adds a player to the game
+			addPlayer(connection, (String) message.getData());
+			break;
+		case CardGameMessage.READY:
+			// marks the specified player as ready for a new game
+			setReadyState(connection);
+			break;
+		case CardGameMessage.MOVE:
+			// validates the move and broadcasts it to all clients if legal
+			handleMove(connection, message);
+			break;
+		case CardGameMessage.MSG:
+			println(LogLevel.DEBUG, "Broadcasts a user message from "
+					+ connection.getRemoteSocketAddress());
+			// broadcast the user message to all clients
+			broadcastUserMessage(connection, (String) message.getData());
+			break;
+		case CardGameMessage.SYNC:
+			// sends a snapshot of the table to the client catching up
+			sendSnapshot(connection, message.getPlayerID());
+			break;
+		default:
+			println(LogLevel.WARN, "Wrong message type: " + message.getType());
+			// invalid message
+			break;
+		}
+	} // handleMessage
+
+	/**
+	 * Handles a MOVE message from the specified client. Without rules, the
+	 * move is simply broadcast to all clients. With rules, only a legal move
+	 * is broadcast; an illegal move by the active player is sent back to that
+	 * player alone, whose client reports it as illegal, and a move by any other
+	 * player is dropped. Runs on the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection to the player who sent the move
+	 * @param message
+	 *            the MOVE message
+	 */
+	private void handleMove(ClientConnection connection,
+			CardGameMessage message) {
+		if (rules == null) {
+			println(LogLevel.DEBUG, "Broadcasts a \"MOVE\" message from "
+					+ connection.getRemoteSocketAddress());
+			// broadcast the MOVE message to all clients
+			broadcastStateChange(message);
+			return;
+		}
+
+		int playerID = message.getPlayerID();
+		Object data = message.getData();
+		if (!rules.isInProgress() || playerID != rules.getCurrentPlayerIdx()
+				|| (data != null && !(data instanceof int[]))) {
+			println(LogLevel.WARN, "Drops a \"MOVE\" message out of turn from "
+					+ connection.getRemoteSocketAddress());
+			return;
+		}
+
+		RuleEvaluationEvent event = new RuleEvaluationEvent();
+		event.begin();
+		boolean legal = rules.acceptMove(playerID, (int[]) data);
+		event.end();
+		if (event.shouldCommit()) {
+			event.tableID = tableID;
+			event.playerID = playerID;
+			event.messageType = message.getType();
+			event.numOfCards = data == null ? 0 : ((int[]) data).length;
+			event.legal = legal;
+			event.commit();
+		}
+
+		if (legal) {
+			println(LogLevel.DEBUG, "Broadcasts a \"MOVE\" message from "
+					+ connection.getRemoteSocketAddress());
+			broadcastStateChange(message);
+		} else {
+			println(LogLevel.WARN, "Rejects an illegal \"MOVE\" message from "
+					+ connection.getRemoteSocketAddress());
+			try {
+				connection.sendMessage(message);
+			} catch (Exception ex) {
+				println(LogLevel.ERROR, "Error in sending a message to the client at "
+						+ connection.getRemoteSocketAddress());
+				if (!server.silentMode) ex.printStackTrace();
+			}
+		}
+	} // handleMove
+
+	/**
+	 * Removes a connection from this table (possibly due to connection loss).
+	 * The connection is removed by the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection being removed from this table
+	 */
+	void removeConnection(final ClientConnection connection) {
+		execute(() -> unseatConnection(connection, false));
+	} // removeConnection
+
+	/**
+	 * Removes a connection which leaves this table of its own accord, e.g., to
+	 * resume a seat at another table. Its seat is freed at once rather than
+	 * held. The connection is removed by the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection leaving this table
+	 */
+	void leaveTable(final ClientConnection connection) {
+		execute(() -> unseatConnection(connection, true));
+	} // leaveTable
+
+	/**
+	 * Removes a connection from its seat and tells the other players. If the
+	 * connection is lost while a game is in progress, the seat of a player
+	 * who has joined is held for the grace period of the server instead, so
+	 * that the player can resume the game. Runs on the event loop of this
+	 * table.
+	 *
+	 * @param connection
+	 *            the connection being removed from this table
+	 * @param voluntary
+	 *            true if the player leaves the seat of its own accord, in
+	 *            which case the seat is never held
+	 */
+	private void unseatConnection(ClientConnection connection,
+			boolean voluntary) {
+		if (spectators.remove(connection)) {
+			server.spectatorRemoved(connection);
+			println(LogLevel.DEBUG, "The spectator at "
+					+ connection.getRemoteSocketAddress() + " leaves.");
+			return;
+		}
+		if (numOfPlayers > 0) {
+			// locates the client connection in the array
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				if (clientConnections[i] == connection) {
+					clientConnections[i] = null;
+					// a connection which leaves of its own accord, e.g., to
+					// resume another seat or to watch a table, stays with
+					// the server
+					if (!voluntary && connection.getTable() == this
+							&& !connection.isSpectator()) {
+						server.connectionRemoved(connection);
+					}
+
+					if (connection.isEvicted()) {
+						println(LogLevel.WARN, clientNames[i] + " ("
+								+ connection.getRemoteSocketAddress()
+								+ ") is disconnected for not keeping up with its messages.");
+					}
+					String remoteAddress = connection
+							.getRemoteSocketAddress().toString();
+					if (!voluntary && sessionTokens[i] != null
+							&& rules != null && rules.isInProgress()
+							&& server.getSessionGracePeriod() > 0) {
+						holdSeat(i, remoteAddress);
+					} else {
+						releaseSeat(i, remoteAddress);
+					}
+					break;
+				}
+			}
+		}
+	} // unseatConnection
+
+	/**
+	 * Frees the specified seat and tells the other players that its player
+	 * has left. Runs on the event loop of this table.
+	 *
+	 * @param seat
+	 *            the seat to be freed
+	 * @param remoteAddress
+	 *            the address of the player who has left
+	 */
+	private void releaseSeat(int seat, String remoteAddress) {
+		String name = clientNames[seat];
+		if (sessionTokens[seat] != null) {
+			server.unregisterSession(sessionTokens[seat]);
+		}
+		clientNames[seat] = null;
+		clientReadyStates[seat] = false;
+		sessionTokens[seat] = null;
+		numOfPlayers--;
+		numOfSeatsTaken.decrementAndGet();
+		// the game is abandoned, as the clients do on a QUIT
+		if (rules != null) {
+			rules.stop();
+		}
+
+		println(name + " (" + remoteAddress + ") leaves the game.");
+
+		// broadcasts a message about the leaving of this player
+		broadcastStateChange(new CardGameMessage(CardGameMessage.QUIT, seat,
+				remoteAddress));
+
+		// no game is left for the disconnected players to resume
+		for (int i = 0; i < maxNumOfPlayers; i++) {
+			if (heldSeats[i] != null) {
+				heldSeats[i].cancel(false);
+				releaseHeldSeat(i);
+			}
+		}
+	} // releaseSeat
+
+	/**
+	 * Holds the specified seat for its disconnected player, who can resume it
+	 * with its session token until the grace period of the server is over.
+	 * Runs on the event loop of this table.
+	 *
+	 * @param seat
+	 *            the seat to be held
+	 * @param remoteAddress
+	 *            the address of the disconnected player
+	 */
+	private void holdSeat(final int seat, String remoteAddress) {
+		final String token = sessionTokens[seat];
+		long gracePeriod = server.getSessionGracePeriod();
+		heldAddresses[seat] = remoteAddress;
+		heldSeats[seat] = server.getTimer().schedule(
+				() -> execute(() -> expireSeat(seat, token)), gracePeriod,
+				TimeUnit.MILLISECONDS);
+		server.seatHeld();
+
+		long seconds = (gracePeriod + 999) / 1000;
+		println(LogLevel.WARN, clientNames[seat] + " (" + remoteAddress
+				+ ") loses the connection. The seat is held for "
+				+ seconds + " seconds.");
+		broadcastMessage(new CardGameMessage(CardGameMessage.MSG, seat,
+				clientNames[seat] + " lost the connection and has "
+						+ seconds + " seconds to come back."));
+	} // holdSeat
+
+	/**
+	 * Frees a held seat once the grace period is over, unless its player has
+	 * come back. Runs on the event loop of this table.
+	 *
+	 * @param seat
+	 *            the held seat
+	 * @param token
+	 *            the session token of the disconnected player
+	 */
+	private void expireSeat(int seat, String token) {
+		if (heldSeats[seat] == null || !token.equals(sessionTokens[seat])) {
+			return;
+		}
+		releaseHeldSeat(seat);
+	} // expireSeat
+
+	/**
+	 * Frees a held seat and tells the other players that its player has left.
+	 * Runs on the event loop of this table.
+	 *
+	 * @param seat
+	 *            the held seat
+	 */
+	private void releaseHeldSeat(int seat) {
+		heldSeats[seat] = null;
+		server.seatReleased();
+		releaseSeat(seat, heldAddresses[seat]);
+		heldAddresses[seat] = null;
+	} // releaseHeldSeat
+
+	/**
+	 * Seats a connection in the held seat of the specified session, and sends
+	 * the client a snapshot of the table. The connection is moved from the
+	 * seat where it was seated, if any, which may be at this table. Runs on
+	 * the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection resuming the session
+	 * @param token
+	 *            the session token
+	 * @param previousTable
+	 *            the table where the connection was seated, or null
+	 */
+	void resumeConnection(final ClientConnection connection,
+			final String token, final CardGameTable previousTable) {
+		execute(() -> {
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				if (heldSeats[i] != null && token.equals(sessionTokens[i])) {
+					heldSeats[i].cancel(false);
+					heldSeats[i] = null;
+					heldAddresses[i] = null;
+					// e.g., a client which came back before its seat was
+					// resumable and was given a free seat at this table
+					if (previousTable == this) {
+						unseatConnection(connection, true);
+					}
+					clientConnections[i] = connection;
+					server.seatResumed(connection, previousTable == null);
+					if (previousTable != null && previousTable != this) {
+						previousTable.leaveTable(connection);
+					}
+
+					println(clientNames[i] + " ("
+							+ connection.getRemoteSocketAddress()
+							+ ") resumes the game.");
+					try {
+						connection.sendMessage(new CardGameMessage(
+								CardGameMessage.RESUME, i, rules.getSnapshot(
+										version, clientNames.clone())));
+					} catch (Exception ex) {
+						println(LogLevel.ERROR, "Error in sending a message to the client at "
+								+ connection.getRemoteSocketAddress());
+						if (!server.silentMode) ex.printStackTrace();
+					}
+					broadcastMessage(new CardGameMessage(CardGameMessage.MSG,
+							i, clientNames[i] + " is back."));
+					return;
+				}
+			}
+
+			// the seat has been freed in the meantime
+			connection.setTable(previousTable);
+			server.refuseResume(connection);
+		});
+	} // resumeConnection
+
+	/**
+	 * Adds a connection to the spectators of this table and sends it the
+	 * current view of the game. The connection is moved from the table where
+	 * it was seated, if any. Runs on the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection of the spectator
+	 * @param previousTable
+	 *            the table where the connection was seated, or null
+	 */
+	void addSpectator(final ClientConnection connection,
+			final CardGameTable previousTable) {
+		execute(() -> {
+			if (rules == null
+					|| spectators.size() >= server.getMaxNumOfSpectators()) {
+				connection.setSpectator(false);
+				connection.setTable(previousTable);
+				server.refuseWatch(connection);
+				return;
+			}
+
+			if (previousTable == this) {
+				unseatConnection(connection, true);
+			}
+			spectators.add(connection);
+			server.spectatorAdded(connection, previousTable == null);
+			if (previousTable != null && previousTable != this) {
+				previousTable.leaveTable(connection);
+			}
+			println("The client at " + connection.getRemoteSocketAddress()
+					+ " watches the game.");
+
+			// the first view goes through the fan-out thread as well, so that
+			// it is delayed like the others and comes after the older ones
+			EncodedMessage view = createView();
+			server.fanOut(() -> sendView(connection, view));
+		});
+	} // addSpectator
+
+	/**
+	 * Takes and encodes the view of this table shown to the spectators. Runs
+	 * on the event loop of this table.
+	 *
+	 * @return the VIEW message, to be shared by all the spectators
+	 */
+	private EncodedMessage createView() {
+		CardGameMessage view = new CardGameMessage(CardGameMessage.VIEW, -1,
+				rules.getSnapshot(version, clientNames.clone()).getView());
+		view.setSequence(version);
+		return new EncodedMessage(view);
+	} // createView
+
+	/**
+	 * Sends the view of this table after a state change to all the
+	 * spectators, on the fan-out thread of the server. Runs on the event loop
+	 * of this table.
+	 */
+	private void broadcastView() {
+		if (spectators.isEmpty() || rules == null) {
+			return;
+		}
+		final EncodedMessage view = createView();
+		server.fanOut(() -> {
+			for (ClientConnection spectator : spectators) {
+				sendView(spectator, view);
+			}
+		});
+	} // broadcastView
+
+	/**
+	 * Sends a view of this table to a spectator. Runs on the fan-out thread
+	 * of the server.
+	 *
+	 * @param spectator
+	 *            the connection of the spectator
+	 * @param view
+	 *            the VIEW message
+	 */
+	private void sendView(ClientConnection spectator, EncodedMessage view) {
+		try {
+			spectator.sendMessage(view);
+		} catch (Exception ex) {
+			println(LogLevel.DEBUG, "Error in sending a view to the spectator at "
+					+ spectator.getRemoteSocketAddress());
+		}
+	} // sendView
+
+	/**
+	 * Sends a snapshot of this table to the specified client, which follows
+	 * the state changes broadcast afterwards. Runs on the event loop of this
+	 * table.
+	 *
+	 * @param connection
+	 *            the connection to the client catching up
+	 * @param playerID
+	 *            the playerID of the client
+	 */
+	private void sendSnapshot(ClientConnection connection, int playerID) {
+		println(LogLevel.DEBUG, "Sends a snapshot of version " + version
+				+ " to " + connection.getRemoteSocketAddress());
+		try {
+			connection.sendMessage(new CardGameMessage(CardGameMessage.SYNC,
+					playerID, rules == null ? null : rules.getSnapshot(version,
+							clientNames.clone())));
+		} catch (Exception ex) {
+			println(LogLevel.ERROR, "Error in sending a message to the client at "
+					+ connection.getRemoteSocketAddress());
+			if (!server.silentMode) ex.printStackTrace();
+		}
+	} // sendSnapshot
+
+	/**
+	 * Numbers the specified state change with the next version of this table
+	 * and broadcasts it to all clients at this table. Runs on the event loop
+	 * of this table.
+	 *
+	 * @param message
+	 *            the message changing the state of this table
+	 */
+	private void broadcastStateChange(CardGameMessage message) {
+		message.setSequence(++version);
+		broadcastMessage(message);
+		broadcastView();
+	} // broadcastStateChange
+
+	/**
+	 * Broadcasts the specified message to all clients at this table. Runs on
+	 * the event loop of this table.
+	 *
+	 * @param message
+	 *            the specified message to be broadcast to all clients
+	 */
+	private void broadcastMessage(CardGameMessage message) {
+		// the message is encoded once and the bytes are shared by all the
+		// clients
+		broadcastMessage(new EncodedMessage(message));
+	} // broadcastMessage
+
+	/**
+	 * Broadcasts the specified encoded message to all clients at this table.
+	 * Runs on the event loop of this table.
+	 *
+	 * @param encoded
+	 *            the specified encoded message to be broadcast to all clients
+	 */
+	private void broadcastMessage(EncodedMessage encoded) {
+		if (numOfPlayers > 0) {
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				if (clientConnections[i] != null) {
+					MessageWriteEvent event = new MessageWriteEvent();
+					event.begin();
+					try {
+						clientConnections[i].sendMessage(encoded);
+					} catch (Exception ex) {
+						println(LogLevel.ERROR, "Error in broadcasting a message to the client at "
+								+ clientConnections[i].getRemoteSocketAddress());
+						if (!server.silentMode) ex.printStackTrace();
+					}
+					event.end();
+					if (event.shouldCommit()) {
+						event.tableID = tableID;
+						event.playerID = i;
+						event.messageType = encoded.getMessage().getType();
+						event.queueDepth = clientConnections[i] == null ? 0
+								: clientConnections[i].getOutboundQueueDepth();
+						event.commit();
+					}
+				}
+			}
+		}
+	} // broadcastMessage
+
+	/**
+	 * adds a player to the game. Runs on the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection to the player who is joining the game
+	 * @param name
+	 *            the name of the player who is joining the game
+	 */
+	private void addPlayer(ClientConnection connection, String name) {
+		if (numOfPlayers > 0) {
+			// locates the client connection in the array
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				if (clientConnections[i] == connection) {
+					// updates the name of the new player
+					clientNames[i] = name;
+
+					println(name + " (" + connection.getRemoteSocketAddress()
+							+ ") joins the game.");
+
+					// broadcasts a message about this player joining the game
+					broadcastStateChange(new CardGameMessage(
+							CardGameMessage.JOIN, i, name));
+
+					// issues a session token with which the player can
+					// resume its seat after losing the connection
+					if (sessionTokens[i] == null) {
+						sessionTokens[i] = server.registerSession(this);
+						try {
+							connection.sendMessage(new CardGameMessage(
+									CardGameMessage.SESSION, i,
+									sessionTokens[i]));
+						} catch (Exception ex) {
+							println(LogLevel.ERROR, "Error in sending a message to the client at "
+									+ connection.getRemoteSocketAddress());
+							if (!server.silentMode) ex.printStackTrace();
+						}
+					}
+					break;
+				}
+			}
+		}
+	} // addPlayer
+
+	/**
+	 * Marks the specified player as ready for a new game. Runs on the event
+	 * loop of this table.
+	 *
+	 * @param connection
+	 *            the connection to the player who becomes ready for a new
+	 *            game
+	 */
+	private void setReadyState(ClientConnection connection) {
+		if (numOfPlayers > 0) {
+			// locates the client connection in the array
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				if (clientConnections[i] == connection) {
+					clientReadyStates[i] = true;
+					println(clientNames[i] + " ("
+							+ connection.getRemoteSocketAddress()
+							+ " ) is ready for the next game.");
+					broadcastMessage(new CardGameMessage(CardGameMessage.READY,
+							i, null));
+					break;
+				}
+			}
+		}
+
+		// checks if all players are ready
+		if (numOfPlayers == maxNumOfPlayers) {
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				if (clientReadyStates[i] == false) {
+					// returns if any of the players is not ready
+					return;
+				}
+			}
+
+			// resets the ready states of all the players for the next game
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				clientReadyStates[i] = false;
+			}
+
+			// draws a seed for the new deck and starts a new game; the clients
+			// rebuild the deck from the seed, except for old clients which
+			// receive the deck itself
+			DealSeed seed = new DealSeed(DealSeed.FISHER_YATES_SPLITMIX64,
+					ThreadLocalRandom.current().nextLong());
+			Deck deck = seed.deal(server.createDeck());
+			if (rules != null) {
+				rules.start(deck);
+			}
+			println("All players are ready. Game starts with seed " + seed
+					+ ".");
+			CardGameMessage start = new CardGameMessage(
+					CardGameMessage.START, -1, seed);
+			CardGameMessage legacyStart = new CardGameMessage(
+					CardGameMessage.START, -1, deck);
+			start.setSequence(++version);
+			legacyStart.setSequence(version);
+			broadcastMessage(new EncodedMessage(start, legacyStart));
+			broadcastView();
+		}
+	} // setReadyState
+
+	/**
+	 * Broadcasts a user message from the specified client to all clients at
+	 * this table. Runs on the event loop of this table.
+	 *
+	 * @param connection
+	 *            the connection to the player who sent the message
+	 * @param msg
+	 *            the user message
+	 */
+	private void broadcastUserMessage(ClientConnection connection, String msg) {
+		if (numOfPlayers > 0) {
+			// locates the client in the array
+			for (int i = 0; i < maxNumOfPlayers; i++) {
+				if (clientConnections[i] == connection) {
+					String longMsg = clientNames[i] + " ("
+							+ connection.getRemoteSocketAddress() + "): "
+							+ msg;
+					broadcastMessage(new CardGameMessage(CardGameMessage.MSG,
+							i, longMsg));
+					break;
+				}
+			}
+		}
+	} // broadcastUserMessage
+
+	/**
+	 * Prints the specified message to the server console, tagged with the ID
+	 * of this table.
+	 *
+	 * @param msg
+	 *            the message to be printed
+	 */
+	private void println(String msg) {
+		server.println(LogLevel.INFO, tableID, msg);
+	}
+
+	/**
+	 * Logs the specified message of this table at the specified level.
+	 *
+	 * @param level
+	 *            the level of the message
+	 * @param msg
+	 *            the message to be logged
+	 */
+	private void println(LogLevel level, String msg) {
+		server.println(level, tableID, msg);
+	}
+}
@@ -2,13 +2,19 @@ import java.io.Serializable;
 import java.util.ArrayList;
 
 /**
- * This class is used to represent a list of cards.
+ * This class is used to represent a list of cards. The cards are kept in the
+ * order in which they were added (or sorted), and the set of the cards is also
+ * kept as a CardSet, so that testing and removing cards do not search the
+ * list.
  * 
  * @author Kenneth Wong
  */
 public class CardList implements Serializable {
 	private static final long serialVersionUID = -3711761437629470849L;
 	private ArrayList<Card> cards = new ArrayList<Card>();
+	// the set of the cards in this list, valid only if maskValid is true
+	private transient long mask = CardSet.EMPTY;
+	private transient boolean maskValid = true;
 
 	/**
 	 * Appends the specified card to the end of this list.
@@ -18,6 +24,7 @@ public class CardList implements Serializable {
 	public void addCard(Card card) {
 		if (card != null) {
 			cards.add(card);
+			mask |= CardSet.of(card);
 		}
 	}
 
@@ -46,6 +53,7 @@ public class CardList implements Serializable {
 	 */
 	public Card removeCard(int i) {
 		if (i >= 0 && i < cards.size()) {
+			maskValid = false;
 			return cards.remove(i);
 		} else {
 			return null;
@@ -62,14 +70,41 @@ public class CardList implements Serializable {
 	 * @return true if this list contained the specified card; otherwise false
 	 */
 	public boolean removeCard(Card card) {
+		if (card != null && !contains(card)) {
+			return false;
+		}
+		maskValid = false;
 		return cards.remove(card);
 	}
 
+	/**
+	 * Removes the first occurrence of each of the specified cards from this
+	 * list. The cards not in this list are ignored.
+	 * 
+	 * @param cards the cards to be removed from this list
+	 */
+	public void removeCards(CardList cards) {
+		long toRemove = getMask() & cards.getMask();
+		for (int i = 0; toRemove != 0 && i < this.cards.size();) {
+			Card card = this.cards.get(i);
+			long bit = card != null ? CardSet.of(card) : CardSet.EMPTY;
+			if ((toRemove & bit) != 0) {
+				this.cards.remove(i);
+				toRemove &= ~bit;
+				maskValid = false;
+			} else {
+				i++;
+			}
+		}
+	}
+
 	/**
 	 * Removes all cards from this list.
 	 */
 	public void removeAllCards() {
 		cards = new ArrayList<Card>();
+		mask = CardSet.EMPTY;
+		maskValid = true;
 	}
 
 	/**
@@ -83,6 +118,7 @@ public class CardList implements Serializable {
 	 */
 	public Card setCard(int i, Card card) {
 		if (i >= 0 && i < cards.size()) {
+			maskValid = false;
 			return cards.set(i, card);
 		} else {
 			return null;
@@ -96,7 +132,29 @@ public class CardList implements Serializable {
 	 * @return true if this list contains the specified card; otherwise false
 	 */
 	public boolean contains(Card card) {
-		return cards.contains(card);
+		if (card == null) {
+			return cards.contains(null);
+		}
+		return CardSet.contains(getMask(), card);
+	}
+
+	/**
+	 * Returns the set of the cards in this list.
+	 * 
+	 * @return the cards in this list as a CardSet
+	 */
+	public long getMask() {
+		if (!maskValid) {
+			long set = CardSet.EMPTY;
+			for (int i = 0; i < cards.size(); i++) {
+				if (cards.get(i) != null) {
+					set |= CardSet.of(cards.get(i));
+				}
+			}
+			mask = set;
+			maskValid = true;
+		}
+		return mask;
 	}
 
 	/**
@@ -0,0 +1,229 @@
+/**
+ * This class is used to model a set of cards as the bits of a long value, one
+ * bit for each of the 52 cards of a standard deck, so that testing, adding or
+ * removing cards and counting them take a single operation and no objects.
+ * <p>
+ * The bits are in the order of the cards in Big Two: bit 0 is the 3 of
+ * Diamonds, bit 1 the 3 of Clubs, ..., and bit 51 the 2 of Spades. That is,
+ * the index of a card is (bigTwoRank * 4 + suit), where bigTwoRank runs from 0
+ * (the 3s) to 12 (the 2s). The highest bit of a set is thus its highest card
+ * in Big Two, and the 4 bits of each rank are next to each other.
+ *
+ * @author Kenneth Wong
+ */
+public final class CardSet {
+	/**
+	 * The empty set.
+	 */
+	public static final long EMPTY = 0L;
+
+	/**
+	 * The set of all the 52 cards.
+	 */
+	public static final long ALL = (1L << 52) - 1;
+
+	/**
+	 * The number of ranks.
+	 */
+	public static final int NUM_OF_RANKS = 13;
+
+	// the cards of the Diamonds, i.e., bit 0 of each rank
+	private static final long DIAMONDS = 0x0001111111111111L;
+
+	private CardSet() {
+	}
+
+	/**
+	 * Returns the index of the bit of a card.
+	 *
+	 * @param suit the suit of the card (0 = Diamond, ..., 3 = Spade)
+	 * @param rank the rank of the card (0 = 'A', 1 = '2', ..., 12 = 'K')
+	 * @return the index of the bit of the card, between 0 and 51
+	 */
+	public static int indexOf(int suit, int rank) {
+		return ((rank + 11) % NUM_OF_RANKS) * 4 + suit;
+	}
+
+	/**
+	 * Returns the index of the bit of a card.
+	 *
+	 * @param card the card
+	 * @return the index of the bit of the card, between 0 and 51
+	 */
+	public static int indexOf(Card card) {
+		return indexOf(card.suit, card.rank);
+	}
+
+	/**
+	 * Returns the set which contains only the specified card.
+	 *
+	 * @param card the card
+	 * @return the set which contains only the card
+	 */
+	public static long of(Card card) {
+		return 1L << indexOf(card.suit, card.rank);
+	}
+
+	/**
+	 * Returns the suit of the card of a bit.
+	 *
+	 * @param index the index of the bit
+	 * @return the suit of the card (0 = Diamond, ..., 3 = Spade)
+	 */
+	public static int suitOf(int index) {
+		return index & 3;
+	}
+
+	/**
+	 * Returns the rank of the card of a bit.
+	 *
+	 * @param index the index of the bit
+	 * @return the rank of the card (0 = 'A', 1 = '2', ..., 12 = 'K')
+	 */
+	public static int rankOf(int index) {
+		return ((index >>> 2) + 2) % NUM_OF_RANKS;
+	}
+
+	/**
+	 * Returns the rank of the card of a bit in the order of Big Two.
+	 *
+	 * @param index the index of the bit
+	 * @return the rank of the card (0 = '3', 1 = '4', ..., 11 = 'A', 12 = '2')
+	 */
+	public static int bigTwoRankOf(int index) {
+		return index >>> 2;
+	}
+
+	/**
+	 * Returns true if a set contains the specified card.
+	 *
+	 * @param set  the set
+	 * @param card the card
+	 * @return true if the set contains the card; otherwise false
+	 */
+	public static boolean contains(long set, Card card) {
+		return (set & of(card)) != 0;
+	}
+
+	/**
+	 * Returns true if a set contains all the cards of another set.
+	 *
+	 * @param set   the set
+	 * @param cards the cards
+	 * @return true if the set contains all the cards; otherwise false
+	 */
+	public static boolean containsAll(long set, long cards) {
+		return (set & cards) == cards;
+	}
+
+	/**
+	 * Returns the union of two sets.
+	 *
+	 * @param set1 a set
+	 * @param set2 another set
+	 * @return the cards in either set
+	 */
+	public static long union(long set1, long set2) {
+		return set1 | set2;
+	}
+
+	/**
+	 * Returns a set without the cards of another set.
+	 *
+	 * @param set   the set
+	 * @param cards the cards to be removed
+	 * @return the cards of the set which are not among the cards removed
+	 */
+	public static long remove(long set, long cards) {
+		return set & ~cards;
+	}
+
+	/**
+	 * Returns the number of cards in a set.
+	 *
+	 * @param set the set
+	 * @return the number of cards in the set
+	 */
+	public static int size(long set) {
+		return Long.bitCount(set);
+	}
+
+	/**
+	 * Returns the index of the bit of the highest card in Big Two of a set.
+	 *
+	 * @param set the set
+	 * @return the index of the bit of the highest card, or -1 if the set is
+	 *         empty
+	 */
+	public static int highest(long set) {
+		return 63 - Long.numberOfLeadingZeros(set);
+	}
+
+	/**
+	 * Returns the index of the bit of the lowest card in Big Two of a set.
+	 *
+	 * @param set the set
+	 * @return the index of the bit of the lowest card, or 64 if the set is
+	 *         empty
+	 */
+	public static int lowest(long set) {
+		return Long.numberOfTrailingZeros(set);
+	}
+
+	/**
+	 * Returns the cards of a suit in a set.
+	 *
+	 * @param set  the set
+	 * @param suit the suit (0 = Diamond, ..., 3 = Spade)
+	 * @return the cards of the suit in the set
+	 */
+	public static long suit(long set, int suit) {
+		return set & (DIAMONDS << suit);
+	}
+
+	/**
+	 * Returns the cards of a rank in a set, as 4 bits indexed by the suit.
+	 *
+	 * @param set        the set
+	 * @param bigTwoRank the rank in the order of Big Two (0 = '3', ..., 12 =
+	 *                   '2')
+	 * @return the suits of the cards of the rank in the set
+	 */
+	public static int rank(long set, int bigTwoRank) {
+		return (int) (set >>> (bigTwoRank * 4)) & 0xF;
+	}
+
+	/**
+	 * Returns the ranks present in a set, as 13 bits indexed by the rank in
+	 * the order of Big Two.
+	 *
+	 * @param set the set
+	 * @return the ranks of the cards in the set
+	 */
+	public static int ranks(long set) {
+		// folds the 4 suits of each rank into its Diamond bit
+		long folded = (set | (set >>> 1) | (set >>> 2) | (set >>> 3)) & DIAMONDS;
+		int ranks = 0;
+		while (folded != 0) {
+			int index = Long.numberOfTrailingZeros(folded);
+			ranks |= 1 << (index >>> 2);
+			folded &= folded - 1;
+		}
+		return ranks;
+	}
+
+	/**
+	 * Returns a string representation of a set, in the format of a CardList.
+	 *
+	 * @param set the set
+	 * @return a string representation of the cards in the set
+	 */
+	public static String toString(long set) {
+		CardList cards = new CardList();
+		for (long rest = set; rest != 0; rest &= rest - 1) {
+			int index = Long.numberOfTrailingZeros(rest);
+			cards.addCard(Card.valueOf(suitOf(index), rankOf(index)));
+		}
+		return cards.toString();
+	}
+}
@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This abstract class is used to model a connection between a card game server
+ * and one of its clients, independent of the transport carrying the messages.
+ * <p>
+ * Messages sent to a client are put into a bounded outbound queue and written
+ * asynchronously, so that a slow client never blocks the sender. Once the
+ * queue reaches the drop high-water mark, user chat messages are dropped;
+ * VIEW messages, each superseded by the next one, are dropped alike; once it
+ * reaches the disconnect high-water mark, the client is disconnected.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public abstract class ClientConnection {
+	/**
+	 * The default queue depth at which user chat messages are dropped.
+	 */
+	public static final int DEFAULT_DROP_HIGH_WATER_MARK = 128;
+	/**
+	 * The default queue depth at which the client is disconnected.
+	 */
+	public static final int DEFAULT_DISCONNECT_HIGH_WATER_MARK = 512;
+
+	// the table where this connection is seated
+	private volatile CardGameTable table = null;
+	// queue depth at which user chat messages are dropped
+	private volatile int dropHighWaterMark = DEFAULT_DROP_HIGH_WATER_MARK;
+	// queue depth at which the client is disconnected
+	private volatile int disconnectHighWaterMark = DEFAULT_DISCONNECT_HIGH_WATER_MARK;
+	// number of messages queued but not yet written
+	private final AtomicInteger outboundQueueDepth = new AtomicInteger();
+	// number of messages dropped because the queue was too deep
+	private final AtomicLong numOfDroppedMessages = new AtomicLong();
+	// a boolean indicating if the client was disconnected for being too slow
+	private volatile boolean evicted = false;
+	// the metrics of the server, or null if not counted
+	private volatile ServerMetrics metrics = null;
+	// time (from System.nanoTime()) the last message was received
+	private volatile long lastReceivedAt = System.nanoTime();
+	// a boolean indicating if the client has answered a PING
+	private volatile boolean heartbeatSupported = false;
+	// the timeout checking this connection for being idle, or null
+	private volatile HashedTimerWheel.Timeout idleTimeout = null;
+	// a boolean indicating if the client watches its table as a spectator
+	private volatile boolean spectator = false;
+
+	/**
+	 * Returns the table where this connection is seated.
+	 *
+	 * @return the table where this connection is seated, or null if it is not
+	 *         seated
+	 */
+	public CardGameTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Sets the table where this connection is seated.
+	 *
+	 * @param table
+	 *            the table where this connection is seated
+	 */
+	public void setTable(CardGameTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Returns true if the client watches its table as a spectator rather than
+	 * being seated.
+	 *
+	 * @return true if the client is a spectator; false otherwise
+	 */
+	public boolean isSpectator() {
+		return spectator;
+	}
+
+	/**
+	 * Sets whether the client watches its table as a spectator.
+	 *
+	 * @param spectator
+	 *            true if the client is a spectator
+	 */
+	public void setSpectator(boolean spectator) {
+		this.spectator = spectator;
+	}
+
+	/**
+	 * Sets the metrics where the messages and bytes sent to and received from
+	 * the client are counted.
+	 *
+	 * @param metrics
+	 *            the metrics of the server, or null if not counted
+	 */
+	public void setMetrics(ServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Tells this connection that a message has been received from the client.
+	 */
+	public void messageReceived() {
+		lastReceivedAt = System.nanoTime();
+	}
+
+	/**
+	 * Returns the time the last message was received from the client.
+	 *
+	 * @return the time (from System.nanoTime()) the last message was received
+	 */
+	public long getLastReceivedAt() {
+		return lastReceivedAt;
+	}
+
+	/**
+	 * Tells this connection that the client has answered a PING, and thus
+	 * can be disconnected when it stops answering.
+	 */
+	public void setHeartbeatSupported() {
+		heartbeatSupported = true;
+	}
+
+	/**
+	 * Returns true if the client has answered a PING.
+	 *
+	 * @return true if the client has answered a PING; false otherwise
+	 */
+	public boolean isHeartbeatSupported() {
+		return heartbeatSupported;
+	}
+
+	/**
+	 * Returns the timeout checking this connection for being idle.
+	 *
+	 * @return the timeout checking this connection, or null if there is none
+	 */
+	public HashedTimerWheel.Timeout getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Sets the timeout checking this connection for being idle.
+	 *
+	 * @param idleTimeout
+	 *            the timeout checking this connection, or null
+	 */
+	public void setIdleTimeout(HashedTimerWheel.Timeout idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Sets the high-water marks of the outbound queue.
+	 *
+	 * @param dropHighWaterMark
+	 *            the queue depth at which user chat messages and views are
+	 *            dropped
+	 * @param disconnectHighWaterMark
+	 *            the queue depth at which the client is disconnected
+	 */
+	public void setOutboundHighWaterMarks(int dropHighWaterMark,
+			int disconnectHighWaterMark) {
+		this.dropHighWaterMark = dropHighWaterMark;
+		this.disconnectHighWaterMark = disconnectHighWaterMark;
+	}
+
+	/**
+	 * Returns the number of messages queued but not yet written.
+	 *
+	 * @return the number of messages queued but not yet written
+	 */
+	public int getOutboundQueueDepth() {
+		return outboundQueueDepth.get();
+	}
+
+	/**
+	 * Returns the number of messages dropped because the outbound queue was
+	 * too deep.
+	 *
+	 * @return the number of messages dropped
+	 */
+	public long getNumOfDroppedMessages() {
+		return numOfDroppedMessages.get();
+	}
+
+	/**
+	 * Returns true if the client was disconnected for being too slow.
+	 *
+	 * @return true if the client was disconnected for being too slow; false
+	 *         otherwise
+	 */
+	public boolean isEvicted() {
+		return evicted;
+	}
+
+	/**
+	 * Returns the address of the remote end of this connection.
+	 *
+	 * @return the address of the remote end of this connection
+	 */
+	public abstract SocketAddress getRemoteSocketAddress();
+
+	/**
+	 * Queues the specified message to be sent to the client. This method never
+	 * blocks on the network.
+	 *
+	 * @param message
+	 *            the message to be sent to the client
+	 * @throws IOException
+	 *             if the connection is closed, or is closed because the client
+	 *             is too slow
+	 */
+	public void sendMessage(CardGameMessage message) throws IOException {
+		sendMessage(new EncodedMessage(message));
+	}
+
+	/**
+	 * Queues the specified encoded message to be sent to the client. The same
+	 * encoded message can be sent to many clients, and is only encoded once.
+	 * This method never blocks on the network.
+	 *
+	 * @param message
+	 *            the encoded message to be sent to the client
+	 * @throws IOException
+	 *             if the connection is closed, or is closed because the client
+	 *             is too slow
+	 */
+	public void sendMessage(EncodedMessage message) throws IOException {
+		int depth = outboundQueueDepth.get();
+		if (depth >= disconnectHighWaterMark) {
+			evict();
+			throw new IOException("Outbound queue full: " + depth
+					+ " messages pending");
+		}
+		int type = message.getMessage().getType();
+		if (depth >= dropHighWaterMark
+				&& (type == CardGameMessage.MSG || type == CardGameMessage.VIEW)) {
+			numOfDroppedMessages.incrementAndGet();
+			return;
+		}
+
+		outboundQueueDepth.incrementAndGet();
+		try {
+			enqueue(message);
+		} catch (IOException ex) {
+			outboundQueueDepth.decrementAndGet();
+			throw ex;
+		}
+		ServerMetrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.messageSent(message.getMessage().getType());
+		}
+	}
+
+	/**
+	 * Puts the specified message into the outbound queue of the transport,
+	 * encoding it in the wire format of the transport if it has not been
+	 * encoded in that format yet.
+	 *
+	 * @param message
+	 *            the encoded message to be sent to the client
+	 * @throws IOException
+	 *             if the connection is closed or the message cannot be
+	 *             encoded
+	 */
+	protected abstract void enqueue(EncodedMessage message) throws IOException;
+
+	/**
+	 * Tells this connection that a queued message has been written. Called by
+	 * the transport once for each message it takes off the outbound queue.
+	 */
+	protected void messageWritten() {
+		outboundQueueDepth.decrementAndGet();
+	}
+
+	/**
+	 * Tells this connection that bytes have been written to the client. Called
+	 * by the transport.
+	 *
+	 * @param numOfBytes
+	 *            the number of bytes written
+	 */
+	protected void bytesWritten(long numOfBytes) {
+		ServerMetrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.bytesSent(numOfBytes);
+		}
+	}
+
+	/**
+	 * Disconnects a client which does not keep up with its messages and
+	 * removes it from its table.
+	 */
+	private void evict() {
+		if (evicted) {
+			return;
+		}
+		evicted = true;
+		close();
+		CardGameTable table = this.table;
+		if (table != null) {
+			table.removeConnection(this);
+		}
+	}
+
+	/**
+	 * Closes this connection. Closing a connection that is already closed has
+	 * no effect.
+	 */
+	public abstract void close();
+}
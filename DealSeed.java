@@ -0,0 +1,81 @@
+import java.io.Serializable;
+
+/**
+ * This class is used to model the seed of a deal, from which every client
+ * rebuilds the same shuffled deck. It is sent in a START message in place of
+ * the deck itself, and makes every deal reproducible.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class DealSeed implements Serializable {
+	private static final long serialVersionUID = 4122645170562581027L;
+	/**
+	 * The ID of the Fisher-Yates shuffle driven by a SplitMix64 generator, as
+	 * implemented by Deck.shuffle(long).
+	 */
+	public static final int FISHER_YATES_SPLITMIX64 = 1;
+
+	private final int algorithm; // the ID of the shuffle algorithm
+	private final long seed; // the seed of the shuffle
+
+	/**
+	 * Creates and returns an instance of the DealSeed class.
+	 * 
+	 * @param algorithm
+	 *            the ID of the shuffle algorithm
+	 * @param seed
+	 *            the seed of the shuffle
+	 */
+	public DealSeed(int algorithm, long seed) {
+		this.algorithm = algorithm;
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the ID of the shuffle algorithm.
+	 * 
+	 * @return the ID of the shuffle algorithm
+	 */
+	public int getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Returns the seed of the shuffle.
+	 * 
+	 * @return the seed of the shuffle
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Deals the specified deck, i.e., puts it back into its initial order and
+	 * shuffles it with this seed.
+	 * 
+	 * @param deck
+	 *            the deck to be dealt
+	 * @return the specified deck, shuffled
+	 * @throws IllegalArgumentException
+	 *             if the shuffle algorithm is not supported
+	 */
+	public Deck deal(Deck deck) {
+		if (algorithm != FISHER_YATES_SPLITMIX64) {
+			throw new IllegalArgumentException("Unsupported shuffle algorithm: "
+					+ algorithm);
+		}
+		deck.initialize();
+		deck.shuffle(seed);
+		return deck;
+	}
+
+	/**
+	 * Returns a string representation of this seed.
+	 * 
+	 * @return a string representation of this seed
+	 */
+	public String toString() {
+		return algorithm + ":" + Long.toHexString(seed);
+	}
+}
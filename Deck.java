@@ -20,7 +20,7 @@ public class Deck extends CardList {
 		removeAllCards();
 		for (int i = 0; i < 4; i++) {
 			for (int j = 0; j < 13; j++) {
-				Card card = new Card(i, j);
+				Card card = Card.valueOf(i, j);
 				addCard(card);
 			}
 		}
@@ -38,4 +38,31 @@ public class Deck extends CardList {
 			}
 		}
 	}
+
+	/**
+	 * Shuffles the deck of cards deterministically, so that the same seed
+	 * always gives the same order of the same initial deck. This is a
+	 * Fisher-Yates shuffle driven by a SplitMix64 generator (i.e., the
+	 * DealSeed.FISHER_YATES_SPLITMIX64 algorithm).
+	 * 
+	 * @param seed
+	 *            the seed of the shuffle
+	 */
+	public void shuffle(long seed) {
+		long state = seed;
+		for (int i = this.size() - 1; i > 0; i--) {
+			// next value of the SplitMix64 generator
+			state += 0x9E3779B97F4A7C15L;
+			long z = state;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			z = z ^ (z >>> 31);
+
+			int j = (int) ((z >>> 1) % (i + 1));
+			if (i != j) {
+				Card card = setCard(i, getCard(j));
+				setCard(j, card);
+			}
+		}
+	}
 }
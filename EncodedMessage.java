@@ -0,0 +1,130 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+
+/**
+ * This class is used to model a message which is encoded at most once per
+ * wire format, however many clients it is sent to. The encoded bytes are
+ * immutable and shared by all the recipients.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public class EncodedMessage {
+	// the reset marker of a serialization stream (ObjectStreamConstants.TC_RESET)
+	private static final byte TC_RESET = 0x79;
+	// length of the header of a serialization stream
+	private static final int STREAM_HEADER_LENGTH = 4;
+
+	private final CardGameMessage message;
+	// the message for plain serialization streams, whose clients may predate
+	// the current form of the message
+	private final CardGameMessage legacyMessage;
+	// the message serialized for an existing serialization stream
+	private byte[] streamBytes = null;
+	// the frames of the message, one per codec
+	private IdentityHashMap<MessageCodec, byte[]> frames = null;
+
+	/**
+	 * Creates and returns an instance of the EncodedMessage class. The message
+	 * must not be modified afterwards.
+	 *
+	 * @param message
+	 *            the message to be encoded
+	 */
+	public EncodedMessage(CardGameMessage message) {
+		this(message, message);
+	}
+
+	/**
+	 * Creates and returns an instance of the EncodedMessage class with a
+	 * different form of the message for plain serialization streams. The
+	 * messages must not be modified afterwards.
+	 *
+	 * @param message
+	 *            the message to be encoded
+	 * @param legacyMessage
+	 *            the message to be written to plain serialization streams
+	 */
+	public EncodedMessage(CardGameMessage message, CardGameMessage legacyMessage) {
+		this.message = message;
+		this.legacyMessage = legacyMessage;
+	}
+
+	/**
+	 * Returns the message.
+	 *
+	 * @return the message
+	 */
+	public CardGameMessage getMessage() {
+		return message;
+	}
+
+	/**
+	 * Returns the bytes to be appended to a serialization stream carrying this
+	 * message. The bytes start with a reset marker, so that they do not depend
+	 * on what has been written to the stream before and can be shared by all
+	 * the streams.
+	 *
+	 * @return the bytes to be appended to a serialization stream (not to be
+	 *         modified)
+	 * @throws IOException
+	 *             if the message cannot be serialized
+	 */
+	public synchronized byte[] getStreamBytes() throws IOException {
+		if (streamBytes == null) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			ObjectOutputStream oostream = new ObjectOutputStream(bytes);
+			oostream.writeObject(legacyMessage);
+			oostream.close();
+
+			// replaces the header of the new stream with the reset marker
+			byte[] encoded = bytes.toByteArray();
+			streamBytes = new byte[encoded.length - STREAM_HEADER_LENGTH + 1];
+			streamBytes[0] = TC_RESET;
+			System.arraycopy(encoded, STREAM_HEADER_LENGTH, streamBytes, 1,
+					encoded.length - STREAM_HEADER_LENGTH);
+		}
+		return streamBytes;
+	}
+
+	/**
+	 * Returns the frame of this message for the specified codec. Each call
+	 * returns an independent read-only view of the same bytes.
+	 *
+	 * @param codec
+	 *            the codec framing the message
+	 * @return a read-only buffer holding the frame
+	 * @throws IOException
+	 *             if the message cannot be encoded
+	 */
+	public ByteBuffer getFrame(MessageCodec codec) throws IOException {
+		return ByteBuffer.wrap(getFrameBytes(codec)).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the bytes of the frame of this message for the specified codec.
+	 *
+	 * @param codec
+	 *            the codec framing the message
+	 * @return the bytes of the frame (not to be modified)
+	 * @throws IOException
+	 *             if the message cannot be encoded
+	 */
+	public synchronized byte[] getFrameBytes(MessageCodec codec)
+			throws IOException {
+		if (frames == null) {
+			frames = new IdentityHashMap<MessageCodec, byte[]>(2);
+		}
+		byte[] frame = frames.get(codec);
+		if (frame == null) {
+			ByteBuffer encoded = codec.encode(message);
+			frame = new byte[encoded.remaining()];
+			encoded.get(frame);
+			frames.put(codec, frame);
+		}
+		return frame;
+	}
+}
@@ -0,0 +1,180 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class is used to model a lookup table of the keys (see HandClassifier)
+ * of all the C(52, 5) = 2,598,960 combinations of five cards, so that
+ * classifying five cards takes a single array access once the table is
+ * loaded. The table takes about 5 MB and is built when it is first loaded,
+ * which is worthwhile only for a program classifying many hands, e.g., the
+ * bots of a load test. It can be cached in a file to skip building it the
+ * next time.
+ * <p>
+ * A combination is indexed by the combinatorial number system: the index of
+ * the cards whose bits in the CardSet are b0 &lt; b1 &lt; ... &lt; b4 is C(b0,
+ * 1) + C(b1, 2) + ... + C(b4, 5), a perfect hash onto 0 to 2,598,959.
+ *
+ * @author Kenneth Wong
+ */
+public final class FiveCardTable {
+	/**
+	 * The number of combinations of five cards.
+	 */
+	public static final int SIZE = 2598960;
+
+	// identifies a cache file; to be changed with the format of the keys
+	private static final int MAGIC = 0x42324B31; // "B2K1"
+	// the number of entries checked against HandClassifier on loading a file
+	private static final int NUM_OF_SAMPLES = 1000;
+	// BINOMIAL[n][k] = C(n, k)
+	private static final int[][] BINOMIAL = new int[52][6];
+
+	static {
+		for (int n = 0; n < 52; n++) {
+			BINOMIAL[n][0] = 1;
+			for (int k = 1; k <= 5 && k <= n; k++) {
+				BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+			}
+		}
+	}
+
+	// the keys of the combinations, or null if the table is not loaded
+	private static volatile short[] table = null;
+
+	private FiveCardTable() {
+	}
+
+	/**
+	 * Returns the index of a combination of five cards in the table.
+	 *
+	 * @param cards the cards, as a CardSet of exactly five cards
+	 * @return the index of the combination, between 0 and SIZE - 1
+	 */
+	public static int indexOf(long cards) {
+		int index = 0;
+		int k = 1;
+		for (long rest = cards; rest != 0; rest &= rest - 1) {
+			index += BINOMIAL[Long.numberOfTrailingZeros(rest)][k++];
+		}
+		return index;
+	}
+
+	/**
+	 * Returns true if the table has been loaded.
+	 *
+	 * @return true if the table has been loaded; otherwise false
+	 */
+	public static boolean isLoaded() {
+		return table != null;
+	}
+
+	/**
+	 * Returns the loaded table, or null if it is not loaded.
+	 */
+	static short[] getTable() {
+		return table;
+	}
+
+	/**
+	 * Loads the table, building it unless it can be read from the cache file.
+	 * A table built is written to the cache file. Does nothing if the table
+	 * has already been loaded.
+	 *
+	 * @param cacheFile the cache file, or null to build the table in memory
+	 *                  only
+	 */
+	public static synchronized void load(File cacheFile) {
+		if (table != null) {
+			return;
+		}
+		short[] keys = null;
+		if (cacheFile != null && cacheFile.isFile()) {
+			try {
+				keys = read(cacheFile);
+			} catch (IOException ex) {
+				// rebuilds the table
+			}
+		}
+		if (keys == null) {
+			keys = build();
+			if (cacheFile != null) {
+				try {
+					write(cacheFile, keys);
+				} catch (IOException ex) {
+					// the table is still usable
+				}
+			}
+		}
+		table = keys;
+	} // load
+
+	/**
+	 * Builds the table, enumerating the combinations in the order of their
+	 * indices.
+	 */
+	private static short[] build() {
+		short[] keys = new short[SIZE];
+		int index = 0;
+		for (int b4 = 4; b4 < 52; b4++) {
+			for (int b3 = 3; b3 < b4; b3++) {
+				for (int b2 = 2; b2 < b3; b2++) {
+					for (int b1 = 1; b1 < b2; b1++) {
+						long high = (1L << b4) | (1L << b3) | (1L << b2)
+								| (1L << b1);
+						for (int b0 = 0; b0 < b1; b0++) {
+							keys[index++] = (short) HandClassifier
+									.classifyFive(high | (1L << b0));
+						}
+					}
+				}
+			}
+		}
+		return keys;
+	} // build
+
+	/**
+	 * Reads the table from a cache file, or returns null if the file is not a
+	 * valid cache of the current table, e.g., a cache of keys of an older
+	 * format.
+	 */
+	private static short[] read(File file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		if (buffer.remaining() != 8 + SIZE * 2 || buffer.getInt() != MAGIC
+				|| buffer.getInt() != SIZE) {
+			return null;
+		}
+		short[] keys = new short[SIZE];
+		buffer.asShortBuffer().get(keys);
+
+		// spot-checks the file against the classifier
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < NUM_OF_SAMPLES; i++) {
+			long cards = CardSet.EMPTY;
+			while (CardSet.size(cards) < 5) {
+				cards |= 1L << random.nextInt(52);
+			}
+			if (keys[indexOf(cards)] != HandClassifier.classifyFive(cards)) {
+				return null;
+			}
+		}
+		return keys;
+	} // read
+
+	/**
+	 * Writes the table to a cache file, through a temporary file so that a
+	 * partial file is never read.
+	 */
+	private static void write(File file, short[] keys) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8 + keys.length * 2);
+		buffer.putInt(MAGIC).putInt(keys.length);
+		buffer.asShortBuffer().put(keys);
+		File temp = new File(file.getPath() + ".tmp");
+		Files.write(temp.toPath(), buffer.array());
+		Files.move(temp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	} // write
+}
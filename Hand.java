@@ -1,11 +1,15 @@
 
 /**
- * this abstract class models a hand of cards
+ * this abstract class models a hand of cards. the strength of the hand and its
+ * top card are worked out once, when the hand is constructed, so comparing two
+ * hands is a comparison of their keys (see HandClassifier)
  * 
  * @author Tom Wong
  */
 public abstract class Hand extends CardList {
    private final CardGamePlayer player;
+   private final int key; // strength of the hand, or HandClassifier.INVALID
+   private final Card topCard;
 
    /**
     * constructs a hand with specified player and cards
@@ -19,6 +23,24 @@ public abstract class Hand extends CardList {
          this.addCard(cards.getCard(i));
       }
       this.sort();
+      this.key = HandClassifier.classifyAs(this.getMask(), HandClassifier.categoryOf(this.getType()));
+      this.topCard = this.findCard(this.key != HandClassifier.INVALID ? HandClassifier.topCardOf(this.key)
+            : CardSet.highest(this.getMask()));
+   }
+
+   /**
+    * find the card with the specified index in the card set
+    * 
+    * @param index the index of the card in the card set
+    * @return the card, or null if it is not in this hand
+    */
+   private Card findCard(int index) {
+      for (int i = this.size() - 1; i >= 0; i--) {
+         if (CardSet.indexOf(this.getCard(i)) == index) {
+            return this.getCard(i);
+         }
+      }
+      return null;
    }
 
    /**
@@ -36,12 +58,18 @@ public abstract class Hand extends CardList {
     * @return a top card
     */
    public Card getTopCard() {
-      if (!this.isEmpty()) {
-         this.sort();
-         return this.getCard(this.size() - 1);
-      } else {
-         return null;
-      }
+      return this.topCard;
+   }
+
+   /**
+    * get the strength key of the hand. a hand beats another hand of the same
+    * size if and only if its key is larger
+    * 
+    * @return the key of the hand, or HandClassifier.INVALID if the hand is not
+    *         valid
+    */
+   public int getKey() {
+      return this.key;
    }
 
    /**
@@ -51,12 +79,7 @@ public abstract class Hand extends CardList {
     * @return true if the hand played beats another hand. otherwise, false
     */
    public boolean beats(Hand hand) {
-      if (hand == null || !hand.isValid() || !this.isValid() || !(this.getType() == hand.getType())) {
-         return false;
-      } else {
-         return this.getTopCard().compareTo(hand.getTopCard()) > 0;
-      }
-
+      return hand != null && HandClassifier.beats(this.key, hand.key);
    }
 
    /**
@@ -0,0 +1,237 @@
+/**
+ * This class is used to classify the cards played in a Big Two card game. It
+ * works on a CardSet in a single pass, without sorting the cards or creating
+ * any objects, and returns a key which encodes the size, the category and the
+ * strength of the hand which the cards make:
+ * <p>
+ * key = (size &lt;&lt; 10) | (category &lt;&lt; 6) | rank
+ * <p>
+ * where rank is the index (in the CardSet) of the top card of the hand, or for
+ * a flush, (suit * 13 + the Big Two rank of the top card). A hand of the same
+ * size beats another if and only if its key is larger. Invalid cards have the
+ * key INVALID (0).
+ * <p>
+ * Five cards are looked up in the FiveCardTable instead, once it is loaded.
+ *
+ * @author Kenneth Wong
+ */
+public final class HandClassifier {
+	/**
+	 * The key of cards which do not make a valid hand.
+	 */
+	public static final int INVALID = 0;
+
+	/**
+	 * The categories of the hands, in increasing order of strength among the
+	 * hands of the same size.
+	 */
+	public static final int SINGLE = 1;
+	public static final int PAIR = 2;
+	public static final int TRIPLE = 3;
+	public static final int STRAIGHT = 4;
+	public static final int FLUSH = 5;
+	public static final int FULL_HOUSE = 6;
+	public static final int QUAD = 7;
+	public static final int STRAIGHT_FLUSH = 8;
+
+	// the types (see Hand.getType()) of the categories
+	private static final String[] TYPES = { null, "Single", "Pair", "Triple",
+			"Straight", "Flush", "FullHouse", "Quad", "StraightFlush" };
+	// the ranks of five consecutive cards
+	private static final int FIVE_IN_A_ROW = 0x1F;
+
+	private HandClassifier() {
+	}
+
+	/**
+	 * Returns the key of the hand which the specified cards make.
+	 *
+	 * @param cards the cards, as a CardSet
+	 * @return the key of the hand, or INVALID if the cards do not make a valid
+	 *         hand
+	 */
+	public static int classify(long cards) {
+		int size = CardSet.size(cards);
+		int top = CardSet.highest(cards);
+		switch (size) {
+		case 1:
+			return key(size, SINGLE, top);
+		case 2:
+		case 3:
+			// all the cards are of the rank of the top card
+			if (CardSet.size(cards >>> (top & ~3)) != size) {
+				return INVALID;
+			}
+			return key(size, size == 2 ? PAIR : TRIPLE, top);
+		case 5:
+			short[] table = FiveCardTable.getTable();
+			if (table != null) {
+				return table[FiveCardTable.indexOf(cards)];
+			}
+			return classifyFive(cards);
+		default:
+			return INVALID;
+		}
+	} // classify
+
+	/**
+	 * Returns the key of the specified cards as a hand of the specified
+	 * category. This is the key returned by classify(), except that a straight
+	 * flush also makes a straight and a flush, as in Straight.isValid() and
+	 * Flush.isValid().
+	 *
+	 * @param cards    the cards, as a CardSet
+	 * @param category the category of the hand
+	 * @return the key of the hand, or INVALID if the cards do not make a hand
+	 *         of the category
+	 */
+	public static int classifyAs(long cards, int category) {
+		int key = classify(cards);
+		if (categoryOf(key) == category) {
+			return key;
+		} else if (categoryOf(key) == STRAIGHT_FLUSH && category == STRAIGHT) {
+			return key(5, STRAIGHT, key & 0x3F);
+		} else if (categoryOf(key) == STRAIGHT_FLUSH && category == FLUSH) {
+			int top = key & 0x3F;
+			return key(5, FLUSH, CardSet.suitOf(top) * CardSet.NUM_OF_RANKS
+					+ CardSet.bigTwoRankOf(top));
+		} else {
+			return INVALID;
+		}
+	} // classifyAs
+
+	/**
+	 * Returns the key of the hand which five cards make, without the lookup
+	 * table.
+	 */
+	static int classifyFive(long cards) {
+		int top = CardSet.highest(cards);
+		int ranks = CardSet.ranks(cards);
+		int numOfRanks = Integer.bitCount(ranks);
+		if (numOfRanks == 2) {
+			// a quad or a full house, whose top card is the highest card of
+			// the rank with more cards
+			int low = Integer.numberOfTrailingZeros(ranks);
+			int high = 31 - Integer.numberOfLeadingZeros(ranks);
+			int numOfLow = Integer.bitCount(CardSet.rank(cards, low));
+			int rank = numOfLow >= 3 ? low : high;
+			int count = numOfLow >= 3 ? numOfLow : 5 - numOfLow;
+			int rankTop = rank * 4 + 31
+					- Integer.numberOfLeadingZeros(CardSet.rank(cards, rank));
+			return key(5, count == 4 ? QUAD : FULL_HOUSE, rankTop);
+		}
+
+		boolean flush = CardSet.suit(cards, CardSet.suitOf(top)) == cards;
+		// five ranks in a row, without wrapping around from the 2s to the 3s
+		boolean straight = numOfRanks == 5
+				&& ranks >>> Integer.numberOfTrailingZeros(ranks) == FIVE_IN_A_ROW;
+		if (straight && flush) {
+			return key(5, STRAIGHT_FLUSH, top);
+		} else if (flush) {
+			return key(5, FLUSH, CardSet.suitOf(top) * CardSet.NUM_OF_RANKS
+					+ CardSet.bigTwoRankOf(top));
+		} else if (straight) {
+			return key(5, STRAIGHT, top);
+		} else {
+			return INVALID;
+		}
+	} // classifyFive
+
+	private static int key(int size, int category, int rank) {
+		return (size << 10) | (category << 6) | rank;
+	}
+
+	/**
+	 * Returns the number of cards of a hand.
+	 *
+	 * @param key the key of the hand
+	 * @return the number of cards of the hand
+	 */
+	public static int sizeOf(int key) {
+		return key >>> 10;
+	}
+
+	/**
+	 * Returns the category of a hand.
+	 *
+	 * @param key the key of the hand
+	 * @return the category of the hand, e.g., FULL_HOUSE, or INVALID
+	 */
+	public static int categoryOf(int key) {
+		return (key >>> 6) & 0xF;
+	}
+
+	/**
+	 * Returns the category of a type of hands.
+	 *
+	 * @param type the type of the hands, as returned by Hand.getType()
+	 * @return the category of the hands, or INVALID for an unknown type
+	 */
+	public static int categoryOf(String type) {
+		for (int category = SINGLE; category < TYPES.length; category++) {
+			if (TYPES[category].equals(type)) {
+				return category;
+			}
+		}
+		return INVALID;
+	}
+
+	/**
+	 * Returns the index (in the CardSet) of the top card of a hand.
+	 *
+	 * @param key the key of the hand
+	 * @return the index of the top card of the hand
+	 */
+	public static int topCardOf(int key) {
+		int rank = key & 0x3F;
+		if (categoryOf(key) == FLUSH) {
+			return (rank % CardSet.NUM_OF_RANKS) * 4 + rank / CardSet.NUM_OF_RANKS;
+		}
+		return rank;
+	}
+
+	/**
+	 * Returns true if a hand beats another hand, i.e., both are valid hands
+	 * of the same size and the first one is stronger.
+	 *
+	 * @param key      the key of the hand
+	 * @param otherKey the key of the other hand
+	 * @return true if the hand beats the other hand; otherwise false
+	 */
+	public static boolean beats(int key, int otherKey) {
+		return otherKey != INVALID && sizeOf(key) == sizeOf(otherKey)
+				&& key > otherKey;
+	}
+
+	/**
+	 * Returns an instance of the Hand subclass of the category of a hand.
+	 *
+	 * @param key    the key of the hand
+	 * @param player the player who plays the cards
+	 * @param cards  the cards played
+	 * @return the hand, or null if the key is INVALID
+	 */
+	public static Hand createHand(int key, CardGamePlayer player,
+			CardList cards) {
+		switch (categoryOf(key)) {
+		case SINGLE:
+			return new Single(player, cards);
+		case PAIR:
+			return new Pair(player, cards);
+		case TRIPLE:
+			return new Triple(player, cards);
+		case STRAIGHT:
+			return new Straight(player, cards);
+		case FLUSH:
+			return new Flush(player, cards);
+		case FULL_HOUSE:
+			return new FullHouse(player, cards);
+		case QUAD:
+			return new Quad(player, cards);
+		case STRAIGHT_FLUSH:
+			return new StraightFlush(player, cards);
+		default:
+			return null;
+		}
+	} // createHand
+}
@@ -0,0 +1,260 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to model a hashed timer wheel, which tracks a large
+ * number of timeouts at a coarse resolution. Scheduling and cancelling a
+ * timeout cost O(1), and each tick only visits the timeouts hashed into one
+ * bucket of the wheel, so tens of thousands of connections can each have a
+ * deadline at little cost.
+ * <p>
+ * Timeouts may be scheduled and cancelled from any thread. The wheel is
+ * advanced by calling tick() about once per tick duration from a single
+ * thread, which also runs the expired tasks; the tasks must therefore be short
+ * and must not block. The wheel follows the clock rather than the number of
+ * calls, so a late or missed call only delays the timeouts until the next one.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class HashedTimerWheel {
+	private final long tickNanos; // duration of a tick
+	private final Bucket[] wheel; // buckets of the timeouts, by deadline
+	private final int mask; // mask for hashing a tick into a bucket
+	// timeouts scheduled since the last tick
+	private final ConcurrentLinkedQueue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+	// timeouts cancelled since the last tick
+	private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<Timeout>();
+	private final long startTime; // time (from System.nanoTime()) of tick 0
+	private long tick = 0; // the number of ticks so far
+
+	/**
+	 * Creates and returns an instance of the HashedTimerWheel class.
+	 * 
+	 * @param tickDuration
+	 *            the duration of a tick, which is the resolution of the
+	 *            timeouts
+	 * @param unit
+	 *            the unit of the duration
+	 * @param ticksPerWheel
+	 *            the number of buckets of the wheel, rounded up to a power of
+	 *            two
+	 */
+	public HashedTimerWheel(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		if (tickDuration <= 0 || ticksPerWheel <= 0) {
+			throw new IllegalArgumentException("Invalid wheel: " + tickDuration
+					+ " " + unit + " x " + ticksPerWheel);
+		}
+		this.tickNanos = unit.toNanos(tickDuration);
+		int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+		this.wheel = new Bucket[Math.max(1, size)];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheel.length - 1;
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Schedules the specified task to be run after the specified delay. The
+	 * task is run by the first tick at or after the deadline.
+	 * 
+	 * @param task
+	 *            the task to be run
+	 * @param delay
+	 *            the delay
+	 * @param unit
+	 *            the unit of the delay
+	 * @return the timeout, which can be cancelled
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		Timeout timeout = new Timeout(task, System.nanoTime()
+				+ unit.toNanos(Math.max(0, delay)));
+		scheduled.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Advances the wheel to the current time and runs the tasks which have
+	 * expired. Must be called from a single thread, about once per tick
+	 * duration.
+	 */
+	public void tick() {
+		removeCancelledTimeouts();
+		transferScheduledTimeouts();
+
+		// catches up with every tick whose time has come, e.g., the ticks
+		// before the first call, or those of a call which was late
+		long currentTick = (System.nanoTime() - startTime) / tickNanos;
+		while (tick <= currentTick) {
+			expireTimeouts(wheel[(int) (tick & mask)]);
+			tick++;
+		}
+	} // tick
+
+	/**
+	 * Runs the tasks of the timeouts in the bucket of the current tick whose
+	 * last round it is, and counts down the rounds of the others.
+	 */
+	private void expireTimeouts(Bucket bucket) {
+		Timeout timeout = bucket.head;
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.remainingRounds <= 0) {
+				bucket.remove(timeout);
+				if (timeout.expire()) {
+					try {
+						timeout.task.run();
+					} catch (RuntimeException ex) {
+						// a failing task must not stop the wheel
+					}
+				}
+			} else {
+				timeout.remainingRounds--;
+			}
+			timeout = next;
+		}
+	}
+
+	/**
+	 * Puts the timeouts scheduled since the last tick into their buckets.
+	 */
+	private void transferScheduledTimeouts() {
+		Timeout timeout;
+		while ((timeout = scheduled.poll()) != null) {
+			if (timeout.state != Timeout.PENDING) {
+				continue;
+			}
+			// the tick at or after the deadline, but never in the past
+			long deadlineTick = Math.max(tick, (timeout.deadline - startTime
+					+ tickNanos - 1) / tickNanos);
+			timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+			timeout.bucket = wheel[(int) (deadlineTick & mask)];
+			timeout.bucket.add(timeout);
+		}
+	}
+
+	/**
+	 * Takes the timeouts cancelled since the last tick out of their buckets.
+	 */
+	private void removeCancelledTimeouts() {
+		Timeout timeout;
+		while ((timeout = cancelled.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	/**
+	 * This inner class is used to model a task scheduled on the wheel.
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	public final class Timeout {
+		private static final int PENDING = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		private final Runnable task;
+		private final long deadline; // time (from System.nanoTime()) to run
+		private volatile int state = PENDING;
+		// the following fields are only touched by the ticking thread
+		private long remainingRounds; // full turns of the wheel left
+		private Bucket bucket; // the bucket holding this timeout
+		private Timeout prev; // previous timeout in the bucket
+		private Timeout next; // next timeout in the bucket
+
+		private Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels this timeout, so that its task is not run. Cancelling a
+		 * timeout which has expired has no effect.
+		 * 
+		 * @return true if the timeout is cancelled; false if it has expired
+		 *         or was already cancelled
+		 */
+		public boolean cancel() {
+			synchronized (this) {
+				if (state != PENDING) {
+					return false;
+				}
+				state = CANCELLED;
+			}
+			cancelled.add(this);
+			return true;
+		}
+
+		/**
+		 * Returns true if this timeout is cancelled.
+		 * 
+		 * @return true if this timeout is cancelled; false otherwise
+		 */
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		/**
+		 * Returns true if the task of this timeout has been run.
+		 * 
+		 * @return true if this timeout has expired; false otherwise
+		 */
+		public boolean isExpired() {
+			return state == EXPIRED;
+		}
+
+		private synchronized boolean expire() {
+			if (state != PENDING) {
+				return false;
+			}
+			state = EXPIRED;
+			return true;
+		}
+	} // Timeout
+
+	/**
+	 * This inner class is used to model a bucket of the wheel, which is a
+	 * doubly-linked list of timeouts. Only touched by the ticking thread.
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private static final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+
+		private void add(Timeout timeout) {
+			timeout.prev = tail;
+			timeout.next = null;
+			if (tail == null) {
+				head = timeout;
+			} else {
+				tail.next = timeout;
+			}
+			tail = timeout;
+		}
+
+		private void remove(Timeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			if (timeout.prev == null) {
+				head = timeout.next;
+			} else {
+				timeout.prev.next = timeout.next;
+			}
+			if (timeout.next == null) {
+				tail = timeout.prev;
+			} else {
+				timeout.next.prev = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	} // Bucket
+}
@@ -0,0 +1,129 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is used to model a histogram of latencies in nanoseconds, in the
+ * style of HdrHistogram: values are counted in buckets whose width grows with
+ * the value, so that every value is recorded within about 3% of its true
+ * value using a small fixed amount of memory. Recording never blocks and can
+ * be done by many threads at once.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class LatencyHistogram {
+	// the number of bits of the sub-bucket index; each power of two is split
+	// into 2^(SUB_BUCKET_BITS - 1) buckets
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+	// the largest value recorded (about 18 minutes); larger values are
+	// recorded as this value
+	private static final long MAX_VALUE = (1L << 40) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(
+			bucketIndex(MAX_VALUE) + 1);
+	private final LongAdder totalCount = new LongAdder();
+	private final LongAdder totalSum = new LongAdder();
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 * Records the specified latency.
+	 * 
+	 * @param nanos
+	 *            the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+		counts.incrementAndGet(bucketIndex(value));
+		totalCount.increment();
+		totalSum.add(value);
+		maxValue.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Returns the number of latencies recorded.
+	 * 
+	 * @return the number of latencies recorded
+	 */
+	public long getCount() {
+		return totalCount.sum();
+	}
+
+	/**
+	 * Returns the sum of the latencies recorded in nanoseconds.
+	 * 
+	 * @return the sum of the latencies recorded
+	 */
+	public long getSum() {
+		return totalSum.sum();
+	}
+
+	/**
+	 * Returns the largest latency recorded in nanoseconds.
+	 * 
+	 * @return the largest latency recorded, or 0 if none has been recorded
+	 */
+	public long getMax() {
+		return maxValue.get();
+	}
+
+	/**
+	 * Returns the latency at the specified percentile, i.e., the upper bound
+	 * of the bucket holding it.
+	 * 
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the latency at the percentile in nanoseconds, or 0 if none has
+	 *         been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[counts.length()];
+		long total = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValueInBucket(i), getMax());
+			}
+		}
+		return getMax();
+	} // getValueAtPercentile
+
+	/**
+	 * Returns the index of the bucket counting the specified value.
+	 */
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value)
+				- (SUB_BUCKET_BITS - 1);
+		int top = (int) (value >>> shift); // between half count and count - 1
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+				+ (top - SUB_BUCKET_HALF_COUNT);
+	}
+
+	/**
+	 * Returns the largest value counted by the bucket of the specified index.
+	 */
+	private static long highestValueInBucket(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+		long top = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT
+				+ SUB_BUCKET_HALF_COUNT;
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,329 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is used to model a load generator, which opens many simulated
+ * clients (BotClient) against a Big Two server and reports how the server
+ * copes: the number of connections, the moves made per second and the
+ * percentiles of the round-trip time of a move, i.e., the time from sending a
+ * MOVE message to receiving it back from the server.
+ * <p>
+ * The bots play real games, four to a table, so the numbers are those of a
+ * server hosting N / 4 concurrent games.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public class LoadGenerator {
+	// the percentiles reported
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final AtomicInteger numOfConnections = new AtomicInteger();
+	private final LongAdder numOfConnectionsOpened = new LongAdder();
+	private final LongAdder numOfConnectionsFailed = new LongAdder();
+	private final LongAdder numOfConnectionsRejected = new LongAdder();
+	private final LongAdder numOfConnectionsLost = new LongAdder();
+	private final LongAdder numOfMoves = new LongAdder();
+	private final LongAdder numOfRejectedMoves = new LongAdder();
+	private final LongAdder numOfGames = new LongAdder();
+	private final LongAdder numOfChatsSent = new LongAdder();
+	private final LongAdder numOfChatsReceived = new LongAdder();
+	// round-trip times of the moves since the last report
+	private final AtomicReference<LatencyHistogram> intervalRoundTrips = new AtomicReference<LatencyHistogram>(
+			new LatencyHistogram());
+	// round-trip times of all the moves
+	private final LatencyHistogram totalRoundTrips = new LatencyHistogram();
+	// the first error of a connection, reported once
+	private final AtomicReference<Exception> firstError = new AtomicReference<Exception>();
+
+	/**
+	 * Tells the load generator that a bot has connected to the server.
+	 */
+	void connectionOpened() {
+		numOfConnections.incrementAndGet();
+		numOfConnectionsOpened.increment();
+	}
+
+	/**
+	 * Tells the load generator that a bot has failed to connect.
+	 *
+	 * @param bot
+	 *            the bot
+	 * @param ex
+	 *            the error
+	 */
+	void connectionFailed(BotClient bot, Exception ex) {
+		numOfConnectionsFailed.increment();
+		firstError.compareAndSet(null, ex);
+	}
+
+	/**
+	 * Tells the load generator that the server was full.
+	 */
+	void connectionRejected() {
+		numOfConnectionsRejected.increment();
+	}
+
+	/**
+	 * Tells the load generator that a bot has lost its connection.
+	 *
+	 * @param bot
+	 *            the bot
+	 * @param ex
+	 *            the error
+	 */
+	void connectionLost(BotClient bot, Exception ex) {
+		numOfConnectionsLost.increment();
+		firstError.compareAndSet(null, ex);
+	}
+
+	/**
+	 * Tells the load generator that the connection of a bot is closed.
+	 */
+	void connectionClosed() {
+		numOfConnections.decrementAndGet();
+	}
+
+	/**
+	 * Tells the load generator that a move of a bot has been accepted.
+	 */
+	void moveMade() {
+		numOfMoves.increment();
+	}
+
+	/**
+	 * Tells the load generator that a move of a bot has been rejected.
+	 */
+	void moveRejected() {
+		numOfRejectedMoves.increment();
+	}
+
+	/**
+	 * Records the round-trip time of a move.
+	 *
+	 * @param nanos
+	 *            the time (in nanoseconds) from sending the move to receiving
+	 *            it back
+	 */
+	void moveAcknowledged(long nanos) {
+		intervalRoundTrips.get().record(nanos);
+		totalRoundTrips.record(nanos);
+	}
+
+	/**
+	 * Tells the load generator that a bot has won a game.
+	 */
+	void gameFinished() {
+		numOfGames.increment();
+	}
+
+	/**
+	 * Tells the load generator that a bot has sent a chat message.
+	 */
+	void chatSent() {
+		numOfChatsSent.increment();
+	}
+
+	/**
+	 * Tells the load generator that a bot has received a chat message.
+	 */
+	void chatReceived() {
+		numOfChatsReceived.increment();
+	}
+
+	/**
+	 * Prints a line of statistics.
+	 *
+	 * @param label
+	 *            the label of the line
+	 * @param seconds
+	 *            the time (in seconds) covered by the statistics
+	 * @param moves
+	 *            the number of moves made in that time
+	 * @param roundTrips
+	 *            the round-trip times of the moves
+	 */
+	private void report(String label, double seconds, long moves,
+			LatencyHistogram roundTrips) {
+		StringBuilder line = new StringBuilder(label);
+		line.append(String.format(" connections=%d moves/s=%.1f games=%d",
+				numOfConnections.get(), moves / seconds, numOfGames.sum()));
+		line.append(" rtt");
+		for (double percentile : PERCENTILES) {
+			line.append(String.format(" p%s=%.2fms", percentile == (int) percentile
+					? Integer.toString((int) percentile) : Double.toString(percentile),
+					roundTrips.getValueAtPercentile(percentile) / 1e6));
+		}
+		line.append(String.format(" max=%.2fms", roundTrips.getMax() / 1e6));
+		System.out.println(line);
+	} // report
+
+	/**
+	 * Prints the totals of the run.
+	 *
+	 * @param seconds
+	 *            the duration (in seconds) of the run
+	 */
+	private void reportTotals(double seconds) {
+		report("total:", seconds, numOfMoves.sum(), totalRoundTrips);
+		System.out.println("connections opened=" + numOfConnectionsOpened.sum()
+				+ " failed=" + numOfConnectionsFailed.sum() + " rejected="
+				+ numOfConnectionsRejected.sum() + " lost="
+				+ numOfConnectionsLost.sum() + "; moves rejected="
+				+ numOfRejectedMoves.sum() + "; chats sent="
+				+ numOfChatsSent.sum() + " received="
+				+ numOfChatsReceived.sum());
+		if (firstError.get() != null) {
+			System.out.println("first error: " + firstError.get());
+		}
+	} // reportTotals
+
+	/**
+	 * Runs a load test.
+	 *
+	 * @param host
+	 *            the host of the server
+	 * @param port
+	 *            the port of the server
+	 * @param numOfClients
+	 *            the number of bots
+	 * @param rampUpRate
+	 *            the number of bots connected per second, or 0 to connect
+	 *            them all at once
+	 * @param thinkTime
+	 *            the time (in milliseconds) a bot takes to make a move
+	 * @param chatInterval
+	 *            the mean time (in milliseconds) between two chat messages of
+	 *            a bot, or 0 for silent bots
+	 * @param duration
+	 *            the duration (in seconds) of the test, after all the bots
+	 *            have connected
+	 * @param reportInterval
+	 *            the time (in seconds) between two reports
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	public void run(String host, int port, int numOfClients, int rampUpRate,
+			long thinkTime, long chatInterval, int duration, int reportInterval)
+			throws InterruptedException {
+		ScheduledExecutorService timer = Executors.newScheduledThreadPool(
+				Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+				task -> {
+					Thread t = new Thread(task, "bot-timer");
+					t.setDaemon(true);
+					return t;
+				});
+		ArrayList<BotClient> bots = new ArrayList<BotClient>(numOfClients);
+		long startTime = System.nanoTime();
+		for (int i = 0; i < numOfClients; i++) {
+			BotClient bot = new BotClient(this, timer, thinkTime, chatInterval);
+			bot.setServerIP(host);
+			bot.setServerPort(port);
+			bot.setPlayerName("bot" + i);
+			bot.connect();
+			bots.add(bot);
+			if (rampUpRate > 0) {
+				// paces the connections, e.g., for a server limiting the
+				// rate at which it accepts them
+				long due = startTime + (i + 1) * 1000000000L / rampUpRate;
+				long wait = due - System.nanoTime();
+				if (wait > 0) {
+					Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				}
+			}
+		}
+		System.out.println(String.format("%d bots connected in %.1fs",
+				numOfConnectionsOpened.sum(),
+				(System.nanoTime() - startTime) / 1e9));
+
+		long testStart = System.nanoTime();
+		long lastReportAt = testStart;
+		long lastMoves = numOfMoves.sum();
+		for (int elapsed = 0; elapsed < duration; elapsed += reportInterval) {
+			Thread.sleep(Math.min(reportInterval, duration - elapsed) * 1000L);
+			long now = System.nanoTime();
+			long moves = numOfMoves.sum();
+			LatencyHistogram roundTrips = intervalRoundTrips
+					.getAndSet(new LatencyHistogram());
+			report(String.format("%6.1fs:", (now - testStart) / 1e9),
+					(now - lastReportAt) / 1e9, moves - lastMoves, roundTrips);
+			lastReportAt = now;
+			lastMoves = moves;
+		}
+
+		reportTotals((System.nanoTime() - testStart) / 1e9);
+		for (BotClient bot : bots) {
+			bot.close();
+		}
+		timer.shutdownNow();
+	} // run
+
+	/**
+	 * main() method for running a load test.
+	 *
+	 * @param args
+	 *            "--host host" and "--port port" of the server (localhost and
+	 *            2396 by default), "--clients n" to open n bots (4 by
+	 *            default), "--ramp n" to connect n bots per second (all at
+	 *            once by default), "--think ms" for the time a bot takes to
+	 *            make a move (100 by default), "--chat seconds" for the mean
+	 *            time between two chat messages of a bot (0, i.e., silent,
+	 *            by default), "--duration seconds" for the length of the test
+	 *            (60 by default), "--report seconds" for the time between
+	 *            two reports (5 by default) and "--hand-table file" to let the
+	 *            bots look up their five-card hands in a FiveCardTable cached
+	 *            in the file
+	 * @throws InterruptedException
+	 *             if interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		String host = "localhost";
+		int port = 2396;
+		int numOfClients = 4;
+		int rampUpRate = 0;
+		long thinkTime = 100;
+		long chatInterval = 0;
+		int duration = 60;
+		int reportInterval = 5;
+		File handTableFile = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			if (args[i].equals("--host")) {
+				host = value;
+			} else if (args[i].equals("--port")) {
+				port = Integer.parseInt(value);
+			} else if (args[i].equals("--clients")) {
+				numOfClients = Integer.parseInt(value);
+			} else if (args[i].equals("--ramp")) {
+				rampUpRate = Integer.parseInt(value);
+			} else if (args[i].equals("--think")) {
+				thinkTime = Long.parseLong(value);
+			} else if (args[i].equals("--chat")) {
+				chatInterval = (long) (Double.parseDouble(value) * 1000);
+			} else if (args[i].equals("--duration")) {
+				duration = Integer.parseInt(value);
+			} else if (args[i].equals("--report")) {
+				reportInterval = Math.max(1, Integer.parseInt(value));
+			} else if (args[i].equals("--hand-table")) {
+				handTableFile = new File(value);
+			} else {
+				System.out.println("Unknown option: " + args[i]);
+				return;
+			}
+		}
+
+		if (handTableFile != null) {
+			long startTime = System.nanoTime();
+			FiveCardTable.load(handTableFile);
+			System.out.println(String.format("Hand table loaded in %.1fs",
+					(System.nanoTime() - startTime) / 1e9));
+		}
+		new LoadGenerator().run(host, port, numOfClients, rampUpRate,
+				thinkTime, chatInterval, duration, reportInterval);
+	} // main
+}
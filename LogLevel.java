@@ -0,0 +1,25 @@
+/**
+ * This enum is used to model the levels of the log records of a card game
+ * server, from the most to the least verbose.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public enum LogLevel {
+	/**
+	 * Details of every message, e.g., each message received from a client.
+	 */
+	DEBUG,
+	/**
+	 * Events of the server and its tables, e.g., a player joining a game.
+	 */
+	INFO,
+	/**
+	 * Unexpected events handled by the server, e.g., a move out of turn.
+	 */
+	WARN,
+	/**
+	 * Errors, e.g., a connection lost while sending a message.
+	 */
+	ERROR
+}
@@ -0,0 +1,36 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An interface for encoding card game messages into self-delimiting frames
+ * and decoding them back, so that messages can be carried by a non-blocking
+ * transport.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public interface MessageCodec {
+	/**
+	 * Encodes the specified message into a frame.
+	 *
+	 * @param message
+	 *            the message to be encoded
+	 * @return a buffer holding the complete frame, ready to be written
+	 * @throws IOException
+	 *             if the message cannot be encoded
+	 */
+	public ByteBuffer encode(CardGameMessage message) throws IOException;
+
+	/**
+	 * Decodes the next message from the specified buffer. If the buffer does
+	 * not yet hold a complete frame, null is returned and the position of the
+	 * buffer is left unchanged; otherwise the frame is consumed.
+	 *
+	 * @param buffer
+	 *            the buffer (in read mode) holding the received bytes
+	 * @return the decoded message, or null if the frame is not complete
+	 * @throws IOException
+	 *             if the frame is malformed
+	 */
+	public CardGameMessage decode(ByteBuffer buffer) throws IOException;
+}
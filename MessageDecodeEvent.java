@@ -0,0 +1,30 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class is used to model a Java Flight Recorder event for decoding a
+ * message received from a client. The event only covers the decoding, not the
+ * wait for the bytes of the message.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+@Name("cardgame.MessageDecode")
+@Label("Message Decode")
+@Category({ "Card Game", "Message Pipeline" })
+@Description("Decoding of a message received from a client")
+@StackTrace(false)
+public class MessageDecodeEvent extends jdk.jfr.Event {
+	@Label("Table ID")
+	int tableID;
+
+	@Label("Player ID")
+	@Description("The playerID sent by the client")
+	int playerID;
+
+	@Label("Message Type")
+	int messageType;
+}
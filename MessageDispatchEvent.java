@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * This class is used to model a Java Flight Recorder event for handling a
+ * message on the event loop of a table, including the rule evaluation and the
+ * broadcast of its result. The time the message waited for the event loop is
+ * recorded as well.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+@Name("cardgame.MessageDispatch")
+@Label("Message Dispatch")
+@Category({ "Card Game", "Message Pipeline" })
+@Description("Handling of a message on the event loop of a table")
+@StackTrace(false)
+public class MessageDispatchEvent extends jdk.jfr.Event {
+	@Label("Table ID")
+	int tableID;
+
+	@Label("Player ID")
+	int playerID;
+
+	@Label("Message Type")
+	int messageType;
+
+	@Label("Queued Time")
+	@Description("Time from parsing the message to handling it on the event loop")
+	@Timespan(Timespan.NANOSECONDS)
+	long queuedTime;
+}
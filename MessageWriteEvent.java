@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class is used to model a Java Flight Recorder event for handing a
+ * broadcast message to the connection of one client. The connection queues
+ * the message and its transport writes it to the socket later, which shows up
+ * as the jdk.SocketWrite events of the JVM; the depth of the queue left behind
+ * tells how far the client lags.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+@Name("cardgame.MessageWrite")
+@Label("Message Write")
+@Category({ "Card Game", "Message Pipeline" })
+@Description("Handing of a broadcast message to the connection of a client")
+@StackTrace(false)
+public class MessageWriteEvent extends jdk.jfr.Event {
+	@Label("Table ID")
+	int tableID;
+
+	@Label("Player ID")
+	@Description("The seat of the client the message is written to")
+	int playerID;
+
+	@Label("Message Type")
+	int messageType;
+
+	@Label("Queue Depth")
+	@Description("Messages queued for the client after this one")
+	int queueDepth;
+}
@@ -0,0 +1,548 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is used to model a non-blocking transport for a card game server.
+ * A small fixed number of I/O threads, each owning a Selector, handle the
+ * accepts, reads and writes of all the connections. Messages are carried in
+ * the frames of the binary protocol of the server, which the client must ask
+ * for with its hello. Clients speaking Java serialization, e.g., those older
+ * than the binary protocol, are only served by the blocking transport.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public class NioServerTransport {
+	// The initial size of the read buffer of a connection
+	private static final int INITIAL_READ_BUFFER_SIZE = 4 * 1024;
+	// The maximum size of the read buffer of a connection
+	private static final int MAX_READ_BUFFER_SIZE = 1024 * 1024;
+	// The maximum number of frames written by one gathering write
+	private static final int MAX_FRAMES_PER_WRITE = 16;
+
+	// The server which the messages are delivered to
+	private final CardGameServer server;
+	// The I/O loops, each running on its own thread
+	private final IoLoop[] ioLoops;
+	// Index of the I/O loop which the next connection is assigned to
+	private int nextIoLoop = 0;
+	// The channel accepting new connections
+	private ServerSocketChannel serverChannel;
+	// The key of the channel accepting new connections
+	private SelectionKey acceptKey;
+
+	/**
+	 * Creates and returns an instance of the NioServerTransport class.
+	 *
+	 * @param server
+	 *            the server which the messages are delivered to
+	 * @param numOfIoThreads
+	 *            the number of I/O threads
+	 */
+	public NioServerTransport(CardGameServer server, int numOfIoThreads) {
+		this.server = server;
+		this.ioLoops = new IoLoop[Math.max(1, numOfIoThreads)];
+	}
+
+	/**
+	 * Starts accepting connections at the specified port. The calling thread
+	 * becomes the first I/O thread and this method does not return until the
+	 * transport is stopped.
+	 *
+	 * @param port
+	 *            the specified port at which the transport listens
+	 * @throws IOException
+	 *             if the transport cannot be started
+	 */
+	public void start(int port) throws IOException {
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port),
+				server.getAcceptBacklog());
+		serverChannel.configureBlocking(false);
+
+		for (int i = 0; i < ioLoops.length; i++) {
+			ioLoops[i] = new IoLoop(Selector.open());
+		}
+		// the first I/O loop also accepts new connections
+		acceptKey = serverChannel.register(ioLoops[0].selector,
+				SelectionKey.OP_ACCEPT);
+
+		for (int i = 1; i < ioLoops.length; i++) {
+			Thread t = new Thread(ioLoops[i], "nio-io-" + i);
+			t.setDaemon(true);
+			t.start();
+		}
+		ioLoops[0].run();
+	} // start
+
+	/**
+	 * Returns the local port of this transport.
+	 *
+	 * @return the local port, or -1 if the transport is not started
+	 */
+	public int getLocalPort() {
+		try {
+			return ((InetSocketAddress) serverChannel.getLocalAddress())
+					.getPort();
+		} catch (Exception ex) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Stops the transport and closes all the connections.
+	 */
+	public void stop() {
+		try {
+			serverChannel.close();
+		} catch (Exception ex) {
+			if (!server.silentMode) ex.printStackTrace();
+		}
+		for (IoLoop ioLoop : ioLoops) {
+			if (ioLoop != null) {
+				ioLoop.stop();
+			}
+		}
+	} // stop
+
+	/**
+	 * Accepts all pending connections and hands them over to the I/O loops.
+	 */
+	private void acceptConnections() {
+		AcceptRateLimiter limiter = server.getAcceptRateLimiter();
+		SocketChannel channel;
+		try {
+			while (true) {
+				if (limiter != null && !limiter.tryAcquire()) {
+					// leaves the connections in the backlog and stops
+					// accepting until a permit is available
+					acceptKey.interestOps(0);
+					server.getTimer().schedule(this::resumeAccepting,
+							limiter.getNanosUntilNextPermit(),
+							TimeUnit.NANOSECONDS);
+					break;
+				}
+				if ((channel = serverChannel.accept()) == null) {
+					break;
+				}
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				IoLoop ioLoop = ioLoops[nextIoLoop];
+				nextIoLoop = (nextIoLoop + 1) % ioLoops.length;
+				ioLoop.register(new NioConnection(channel, ioLoop));
+			}
+		} catch (IOException ex) {
+			server.println(LogLevel.ERROR, "Error in accepting a connection");
+			if (!server.silentMode) ex.printStackTrace();
+		}
+	} // acceptConnections
+
+	/**
+	 * Accepts new connections again after the accept rate has been exceeded.
+	 * Called by the timer of the server.
+	 */
+	private void resumeAccepting() {
+		if (acceptKey.isValid()) {
+			acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+			ioLoops[0].selector.wakeup();
+		}
+	}
+
+	/**
+	 * This inner class is used for running a Selector on an I/O thread.
+	 *
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class IoLoop implements Runnable {
+		private final Selector selector;
+		// connections waiting to be registered with the selector
+		private final ConcurrentLinkedQueue<NioConnection> pendingConnections = new ConcurrentLinkedQueue<NioConnection>();
+		// connections having messages waiting to be written
+		private final ConcurrentLinkedQueue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<NioConnection>();
+		private volatile Thread thread;
+		private volatile boolean running = true;
+
+		/**
+		 * Creates and returns an instance of the IoLoop class.
+		 *
+		 * @param selector
+		 *            the selector of this I/O loop
+		 */
+		public IoLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		/**
+		 * Hands over a new connection to this I/O loop.
+		 *
+		 * @param connection
+		 *            the new connection
+		 */
+		public void register(NioConnection connection) {
+			pendingConnections.add(connection);
+			wakeup();
+		}
+
+		/**
+		 * Asks this I/O loop to write the pending messages of a connection.
+		 *
+		 * @param connection
+		 *            the connection having messages waiting to be written
+		 */
+		public void requestWrite(NioConnection connection) {
+			pendingWrites.add(connection);
+			wakeup();
+		}
+
+		/**
+		 * Stops this I/O loop.
+		 */
+		public void stop() {
+			running = false;
+			selector.wakeup();
+		}
+
+		private void wakeup() {
+			// no need to wake up the selector from its own thread, as pending
+			// work is processed before the next select
+			if (Thread.currentThread() != thread) {
+				selector.wakeup();
+			}
+		}
+
+		// implementation of method from the Runnable interface
+		public void run() {
+			thread = Thread.currentThread();
+			while (running) {
+				try {
+					selector.select();
+					Iterator<SelectionKey> keys = selector.selectedKeys()
+							.iterator();
+					while (keys.hasNext()) {
+						SelectionKey key = keys.next();
+						keys.remove();
+						processKey(key);
+					}
+					registerPendingConnections();
+					flushPendingWrites();
+				} catch (Exception ex) {
+					server.println(LogLevel.ERROR, "Error in the I/O loop");
+					if (!server.silentMode) ex.printStackTrace();
+				}
+			} // while
+
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof NioConnection) {
+					((NioConnection) key.attachment()).close();
+				}
+			}
+			try {
+				selector.close();
+			} catch (IOException ex) {
+				if (!server.silentMode) ex.printStackTrace();
+			}
+		} // run
+
+		private void processKey(SelectionKey key) {
+			if (!key.isValid()) {
+				return;
+			}
+			if (key.isAcceptable()) {
+				acceptConnections();
+				return;
+			}
+
+			NioConnection connection = (NioConnection) key.attachment();
+			try {
+				if (key.isReadable()) {
+					connection.read();
+				}
+				if (key.isValid() && key.isWritable()) {
+					connection.write();
+				}
+			} catch (Exception ex) {
+				server.println(LogLevel.ERROR, "Error in receiving messages from the client at "
+						+ connection.getRemoteSocketAddress());
+				if (!server.silentMode) ex.printStackTrace();
+				// possible connection loss, removes the connection
+				connection.close();
+				server.removeConnection(connection);
+			}
+		} // processKey
+
+		private void registerPendingConnections() {
+			NioConnection connection;
+			while ((connection = pendingConnections.poll()) != null) {
+				try {
+					connection.key = connection.channel.register(selector,
+							SelectionKey.OP_READ, connection);
+				} catch (IOException ex) {
+					server.println(LogLevel.ERROR, "Error in establishing a connection with a client at "
+							+ connection.getRemoteSocketAddress());
+					if (!server.silentMode) ex.printStackTrace();
+					connection.close();
+				}
+			}
+		} // registerPendingConnections
+
+		private void flushPendingWrites() {
+			NioConnection connection;
+			while ((connection = pendingWrites.poll()) != null) {
+				try {
+					connection.write();
+				} catch (Exception ex) {
+					server.println(LogLevel.ERROR, "Error in sending messages to the client at "
+							+ connection.getRemoteSocketAddress());
+					if (!server.silentMode) ex.printStackTrace();
+					connection.close();
+					server.removeConnection(connection);
+				}
+			}
+		} // flushPendingWrites
+	} // IoLoop
+
+	/**
+	 * This inner class is used to model a non-blocking connection to a client.
+	 *
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class NioConnection extends ClientConnection {
+		private final SocketChannel channel;
+		private final IoLoop ioLoop;
+		private final SocketAddress remoteAddress;
+		// frames waiting to be written to the client
+		private final ConcurrentLinkedQueue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+		// bytes received from the client but not yet decoded
+		private ByteBuffer readBuffer = ByteBuffer
+				.allocate(INITIAL_READ_BUFFER_SIZE);
+		// frames collected for a gathering write
+		private final ByteBuffer[] gatherBuffer = new ByteBuffer[MAX_FRAMES_PER_WRITE];
+		// the codec framing the messages, or null until it is negotiated
+		private volatile MessageCodec codec = null;
+		private SelectionKey key;
+		private volatile boolean closeAfterFlush = false;
+		private volatile boolean closed = false;
+
+		/**
+		 * Creates and returns an instance of the NioConnection class.
+		 *
+		 * @param channel
+		 *            the channel connected to the client
+		 * @param ioLoop
+		 *            the I/O loop serving this connection
+		 * @throws IOException
+		 *             if the address of the client cannot be determined
+		 */
+		public NioConnection(SocketChannel channel, IoLoop ioLoop)
+				throws IOException {
+			this.channel = channel;
+			this.ioLoop = ioLoop;
+			this.remoteAddress = channel.getRemoteAddress();
+		}
+
+		public SocketAddress getRemoteSocketAddress() {
+			return remoteAddress;
+		}
+
+		protected void enqueue(EncodedMessage message) throws IOException {
+			if (closed) {
+				throw new IOException("Connection closed");
+			}
+			// the frame is shared with the other recipients of the message
+			outbound.add(message.getFrame(codec));
+			ioLoop.requestWrite(this);
+		}
+
+		public void close() {
+			closed = true;
+			if (key != null) {
+				key.cancel();
+			}
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				// the channel is unusable anyway
+			}
+		}
+
+		/**
+		 * Reads the available bytes and delivers the complete messages to the
+		 * server. Called on the I/O thread only.
+		 *
+		 * @throws IOException
+		 *             if the connection is lost or a frame is malformed
+		 */
+		private void read() throws IOException {
+			int numOfBytes = channel.read(readBuffer);
+			if (numOfBytes < 0) {
+				throw new EOFException("Connection closed by the client");
+			}
+			server.getMetrics().bytesReceived(numOfBytes);
+
+			readBuffer.flip();
+			if (codec == null && !negotiate()) {
+				readBuffer.compact();
+				return;
+			}
+			CardGameMessage message;
+			while (!closed && (message = decode()) != null) {
+				if (server.isLogging(LogLevel.DEBUG)) {
+					server.println(LogLevel.DEBUG, "Message received from "
+							+ remoteAddress);
+				}
+				server.parseMessage(this, message);
+			}
+			readBuffer.compact();
+
+			// enlarges the buffer if a frame does not fit into it
+			if (!readBuffer.hasRemaining()) {
+				if (readBuffer.capacity() >= MAX_READ_BUFFER_SIZE) {
+					throw new IOException("Frame too large");
+				}
+				ByteBuffer larger = ByteBuffer
+						.allocate(readBuffer.capacity() * 2);
+				readBuffer.flip();
+				larger.put(readBuffer);
+				readBuffer = larger;
+			}
+		} // read
+
+		/**
+		 * Decodes the next complete message in the read buffer, recording it
+		 * as a MessageDecodeEvent. Called on the I/O thread only.
+		 *
+		 * @return the message decoded, or null if no complete frame is left
+		 * @throws IOException
+		 *             if a frame is malformed
+		 */
+		private CardGameMessage decode() throws IOException {
+			MessageDecodeEvent event = new MessageDecodeEvent();
+			event.begin();
+			CardGameMessage message = codec.decode(readBuffer);
+			event.end();
+			if (message != null && event.shouldCommit()) {
+				CardGameTable table = getTable();
+				event.tableID = table == null ? -1 : table.getTableID();
+				event.playerID = message.getPlayerID();
+				event.messageType = message.getType();
+				event.commit();
+			}
+			return message;
+		}
+
+		/**
+		 * Answers the hello of the binary protocol and seats the connection.
+		 * Called on the I/O thread only.
+		 *
+		 * @return true if the hello is answered; false if more bytes are
+		 *         needed
+		 * @throws IOException
+		 *             if the client speaks an unsupported protocol
+		 */
+		private boolean negotiate() throws IOException {
+			if (readBuffer.remaining() < 2) {
+				return false;
+			}
+			int p = readBuffer.position();
+			byte b0 = readBuffer.get(p);
+			byte b1 = readBuffer.get(p + 1);
+
+			if (BinaryMessageCodec.isMagic(b0, b1)) {
+				if (readBuffer.remaining() < BinaryMessageCodec.HELLO_LENGTH) {
+					return false;
+				}
+				int version = Math.min(readBuffer.get(p + 2),
+						BinaryMessageCodec.VERSION);
+				if (version < 1) {
+					throw new IOException("Unsupported protocol version");
+				}
+				readBuffer.position(p + BinaryMessageCodec.HELLO_LENGTH);
+				// the answer is the first thing written to a fresh socket,
+				// which always has room for it
+				ByteBuffer answer = ByteBuffer.wrap(BinaryMessageCodec
+						.hello(version));
+				channel.write(answer);
+				if (answer.hasRemaining()) {
+					throw new IOException("Cannot answer the hello");
+				}
+				codec = server.binaryCodec;
+			} else {
+				throw new IOException(
+						"Only the binary protocol is served by the non-blocking transport");
+			}
+
+			if (!server.addConnection(this)) {
+				// sends a FULL message and closes the connection once it has
+				// been written
+				sendMessage(new CardGameMessage(CardGameMessage.FULL, -1, null));
+				closeAfterFlush = true;
+			}
+			return true;
+		} // negotiate
+
+		/**
+		 * Writes as many pending frames as the socket accepts, gathering
+		 * several frames into each write. Called on the I/O thread only.
+		 *
+		 * @throws IOException
+		 *             if the connection is lost
+		 */
+		private void write() throws IOException {
+			if (key == null || !key.isValid()) {
+				return;
+			}
+
+			while (!outbound.isEmpty()) {
+				// collects the frames at the head of the queue
+				int numOfFrames = 0;
+				for (ByteBuffer frame : outbound) {
+					gatherBuffer[numOfFrames++] = frame;
+					if (numOfFrames == MAX_FRAMES_PER_WRITE) {
+						break;
+					}
+				}
+
+				bytesWritten(channel.write(gatherBuffer, 0, numOfFrames));
+
+				// removes the frames which have been written completely
+				boolean blocked = false;
+				for (int i = 0; i < numOfFrames; i++) {
+					if (gatherBuffer[i].hasRemaining()) {
+						blocked = true;
+						break;
+					}
+					outbound.poll();
+					messageWritten();
+				}
+				Arrays.fill(gatherBuffer, 0, numOfFrames, null);
+				if (blocked) {
+					break;
+				}
+			}
+
+			if (outbound.isEmpty()) {
+				key.interestOps(SelectionKey.OP_READ);
+				if (closeAfterFlush) {
+					close();
+				}
+			} else {
+				// waits until the socket is writable again
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		} // write
+	} // NioConnection
+}
@@ -0,0 +1,34 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * This class is used to model a Java Flight Recorder event for checking a move
+ * against the rules of the game played at a table.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+@Name("cardgame.RuleEvaluation")
+@Label("Rule Evaluation")
+@Category({ "Card Game", "Message Pipeline" })
+@Description("Checking of a move against the rules of the game")
+@StackTrace(false)
+public class RuleEvaluationEvent extends jdk.jfr.Event {
+	@Label("Table ID")
+	int tableID;
+
+	@Label("Player ID")
+	int playerID;
+
+	@Label("Message Type")
+	int messageType;
+
+	@Label("Number of Cards")
+	int numOfCards;
+
+	@Label("Legal")
+	boolean legal;
+}
@@ -0,0 +1,430 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class is used to model the metrics of a card game server: counters of
+ * the messages by type, latency histograms from parsing a message to
+ * broadcasting its result, connection counts, bytes in and out, and the
+ * outbound queue depth of each client. The metrics can be exposed through JMX
+ * and through a local HTTP endpoint in the Prometheus text format.
+ * <p>
+ * Counters are LongAdders, so that updating them from many threads is cheap.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class ServerMetrics implements ServerMetricsMBean {
+	/**
+	 * The number of message types counted; types beyond the last one are
+	 * counted as the last one.
+	 */
+	public static final int NUM_OF_MESSAGE_TYPES = 16;
+
+	// names of the message types of CardGameMessage
+	private static final String[] MESSAGE_TYPE_NAMES = { "PLAYER_LIST", "JOIN",
+			"FULL", "QUIT", "READY", "START", "MOVE", "MSG", "PING", "PONG",
+			"SESSION", "RESUME", "SYNC", "WATCH", "VIEW" };
+	// the percentiles exported as the quantiles of a Prometheus summary
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final CardGameServer server;
+	private final LongAdder[] messagesReceived = new LongAdder[NUM_OF_MESSAGE_TYPES];
+	private final LongAdder[] messagesSent = new LongAdder[NUM_OF_MESSAGE_TYPES];
+	private final LatencyHistogram[] latencies = new LatencyHistogram[NUM_OF_MESSAGE_TYPES];
+	private final LongAdder connectionsAccepted = new LongAdder();
+	private final LongAdder connectionsRejected = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private HttpServer httpServer = null; // the HTTP endpoint, if started
+
+	/**
+	 * Creates and returns an instance of the ServerMetrics class.
+	 * 
+	 * @param server
+	 *            the server whose metrics are collected
+	 */
+	public ServerMetrics(CardGameServer server) {
+		this.server = server;
+		for (int i = 0; i < NUM_OF_MESSAGE_TYPES; i++) {
+			messagesReceived[i] = new LongAdder();
+			messagesSent[i] = new LongAdder();
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Returns the name of the specified message type.
+	 * 
+	 * @param type
+	 *            the message type
+	 * @return the name of the message type
+	 */
+	public static String getMessageTypeName(int type) {
+		if (type >= 0 && type < MESSAGE_TYPE_NAMES.length) {
+			return MESSAGE_TYPE_NAMES[type];
+		} else if (type >= 0 && type < NUM_OF_MESSAGE_TYPES - 1) {
+			return "TYPE_" + type;
+		} else {
+			return "OTHER";
+		}
+	}
+
+	/**
+	 * Counts a message received from a client.
+	 * 
+	 * @param type
+	 *            the type of the message
+	 */
+	public void messageReceived(int type) {
+		messagesReceived[index(type)].increment();
+	}
+
+	/**
+	 * Records the latency from parsing a message to broadcasting its result.
+	 * 
+	 * @param type
+	 *            the type of the message
+	 * @param nanos
+	 *            the latency in nanoseconds
+	 */
+	public void messageHandled(int type, long nanos) {
+		latencies[index(type)].record(nanos);
+	}
+
+	/**
+	 * Counts a message queued to be sent to a client.
+	 * 
+	 * @param type
+	 *            the type of the message
+	 */
+	public void messageSent(int type) {
+		messagesSent[index(type)].increment();
+	}
+
+	/**
+	 * Counts a connection accepted by the server.
+	 */
+	public void connectionAccepted() {
+		connectionsAccepted.increment();
+	}
+
+	/**
+	 * Counts a connection rejected because the server was full.
+	 */
+	public void connectionRejected() {
+		connectionsRejected.increment();
+	}
+
+	/**
+	 * Counts bytes received from a client.
+	 * 
+	 * @param numOfBytes
+	 *            the number of bytes received
+	 */
+	public void bytesReceived(long numOfBytes) {
+		bytesReceived.add(numOfBytes);
+	}
+
+	/**
+	 * Counts bytes sent to a client.
+	 * 
+	 * @param numOfBytes
+	 *            the number of bytes sent
+	 */
+	public void bytesSent(long numOfBytes) {
+		bytesSent.add(numOfBytes);
+	}
+
+	/**
+	 * Returns the latency histogram of the specified message type.
+	 * 
+	 * @param type
+	 *            the message type
+	 * @return the latency histogram of the message type
+	 */
+	public LatencyHistogram getLatencyHistogram(int type) {
+		return latencies[index(type)];
+	}
+
+	public String[] getMessageTypes() {
+		String[] names = new String[NUM_OF_MESSAGE_TYPES];
+		for (int i = 0; i < NUM_OF_MESSAGE_TYPES; i++) {
+			names[i] = getMessageTypeName(i);
+		}
+		return names;
+	}
+
+	public long[] getMessagesReceived() {
+		return sums(messagesReceived);
+	}
+
+	public long[] getMessagesSent() {
+		return sums(messagesSent);
+	}
+
+	public double[] getLatencyMedianMicros() {
+		return percentiles(50);
+	}
+
+	public double[] getLatency99thPercentileMicros() {
+		return percentiles(99);
+	}
+
+	public int getNumOfConnections() {
+		return server.getNumOfConnections();
+	}
+
+	public long getNumOfConnectionsAccepted() {
+		return connectionsAccepted.sum();
+	}
+
+	public long getNumOfConnectionsRejected() {
+		return connectionsRejected.sum();
+	}
+
+	public int getNumOfTables() {
+		return server.getNumOfTables();
+	}
+
+	public int getNumOfSpectators() {
+		return server.getNumOfSpectators();
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	public long getTotalOutboundQueueDepth() {
+		return server.getTotalOutboundQueueDepth();
+	}
+
+	public int getMaxOutboundQueueDepth() {
+		return server.getMaxOutboundQueueDepth();
+	}
+
+	public long getNumOfDroppedMessages() {
+		return server.getNumOfDroppedMessages();
+	}
+
+	public long getNumOfDroppedLogRecords() {
+		return server.getLogger().getNumOfDroppedRecords();
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server.
+	 * 
+	 * @param port
+	 *            the port of the server, which tells servers in the same JVM
+	 *            apart
+	 * @throws Exception
+	 *             if the metrics cannot be registered
+	 */
+	public void registerMBean(int port) throws Exception {
+		ObjectName name = new ObjectName("CardGameServer:type=ServerMetrics,port="
+				+ port);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+	}
+
+	/**
+	 * Starts serving the metrics in the Prometheus text format at
+	 * http://localhost:port/metrics. The endpoint only listens on the loopback
+	 * interface.
+	 * 
+	 * @param port
+	 *            the port of the HTTP endpoint
+	 * @throws IOException
+	 *             if the endpoint cannot be started
+	 */
+	public void startHttpServer(int port) throws IOException {
+		httpServer = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), 0);
+		httpServer.createContext("/metrics", new MetricsHandler());
+		httpServer.start();
+	}
+
+	/**
+	 * Returns the local port of the HTTP endpoint.
+	 * 
+	 * @return the local port of the HTTP endpoint, or -1 if it is not started
+	 */
+	public int getHttpPort() {
+		return httpServer == null ? -1 : httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the HTTP endpoint, if started.
+	 */
+	public void stopHttpServer() {
+		if (httpServer != null) {
+			httpServer.stop(0);
+			httpServer = null;
+		}
+	}
+
+	/**
+	 * Returns the metrics in the Prometheus text exposition format.
+	 * 
+	 * @return the metrics in the Prometheus text format
+	 */
+	public String toPrometheusText() {
+		StringBuilder text = new StringBuilder(4096);
+
+		header(text, "cardgame_messages_received_total",
+				"Messages received from the clients, by type.", "counter");
+		for (int i = 0; i < NUM_OF_MESSAGE_TYPES; i++) {
+			long value = messagesReceived[i].sum();
+			if (value > 0) {
+				sample(text, "cardgame_messages_received_total", "type=\""
+						+ getMessageTypeName(i) + "\"", value);
+			}
+		}
+		header(text, "cardgame_messages_sent_total",
+				"Messages queued to be sent to the clients, by type.",
+				"counter");
+		for (int i = 0; i < NUM_OF_MESSAGE_TYPES; i++) {
+			long value = messagesSent[i].sum();
+			if (value > 0) {
+				sample(text, "cardgame_messages_sent_total", "type=\""
+						+ getMessageTypeName(i) + "\"", value);
+			}
+		}
+
+		header(text, "cardgame_message_latency_seconds",
+				"Latency from parsing a message to broadcasting its result, by type.",
+				"summary");
+		for (int i = 0; i < NUM_OF_MESSAGE_TYPES; i++) {
+			LatencyHistogram histogram = latencies[i];
+			long count = histogram.getCount();
+			if (count == 0) {
+				continue;
+			}
+			String type = "type=\"" + getMessageTypeName(i) + "\"";
+			for (double quantile : QUANTILES) {
+				sample(text, "cardgame_message_latency_seconds", type
+						+ ",quantile=\"" + quantile + "\"",
+						histogram.getValueAtPercentile(quantile * 100) / 1e9);
+			}
+			sample(text, "cardgame_message_latency_seconds_sum", type,
+					histogram.getSum() / 1e9);
+			sample(text, "cardgame_message_latency_seconds_count", type, count);
+		}
+
+		gauge(text, "cardgame_connections",
+				"Connections seated at or watching the tables.",
+				getNumOfConnections());
+		counter(text, "cardgame_connections_accepted_total",
+				"Connections accepted.", getNumOfConnectionsAccepted());
+		counter(text, "cardgame_connections_rejected_total",
+				"Connections rejected because the server was full.",
+				getNumOfConnectionsRejected());
+		gauge(text, "cardgame_tables", "Tables open.", getNumOfTables());
+		gauge(text, "cardgame_spectators", "Connections watching the tables.",
+				getNumOfSpectators());
+		counter(text, "cardgame_received_bytes_total",
+				"Bytes received from the clients.", getBytesReceived());
+		counter(text, "cardgame_sent_bytes_total", "Bytes sent to the clients.",
+				getBytesSent());
+		counter(text, "cardgame_dropped_messages_total",
+				"User chat messages dropped for slow clients.",
+				getNumOfDroppedMessages());
+		counter(text, "cardgame_dropped_log_records_total",
+				"Log records dropped because the logger was busy.",
+				getNumOfDroppedLogRecords());
+
+		header(text, "cardgame_outbound_queue_depth",
+				"Messages queued but not yet written, by client.", "gauge");
+		for (ClientConnection connection : server.getConnections()) {
+			CardGameTable table = connection.getTable();
+			sample(text, "cardgame_outbound_queue_depth", "client=\""
+					+ connection.getRemoteSocketAddress() + "\",table=\""
+					+ (table == null ? "" : table.getTableID()) + "\"",
+					connection.getOutboundQueueDepth());
+		}
+		return text.toString();
+	} // toPrometheusText
+
+	private static int index(int type) {
+		return type >= 0 && type < NUM_OF_MESSAGE_TYPES ? type
+				: NUM_OF_MESSAGE_TYPES - 1;
+	}
+
+	private static long[] sums(LongAdder[] adders) {
+		long[] sums = new long[adders.length];
+		for (int i = 0; i < adders.length; i++) {
+			sums[i] = adders[i].sum();
+		}
+		return sums;
+	}
+
+	private double[] percentiles(double percentile) {
+		double[] values = new double[NUM_OF_MESSAGE_TYPES];
+		for (int i = 0; i < NUM_OF_MESSAGE_TYPES; i++) {
+			values[i] = latencies[i].getValueAtPercentile(percentile) / 1e3;
+		}
+		return values;
+	}
+
+	private static void header(StringBuilder text, String name, String help,
+			String type) {
+		text.append("# HELP ").append(name).append(' ').append(help)
+				.append('\n');
+		text.append("# TYPE ").append(name).append(' ').append(type)
+				.append('\n');
+	}
+
+	private static void sample(StringBuilder text, String name,
+			String labels, double value) {
+		text.append(name).append('{').append(labels).append("} ");
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			text.append((long) value);
+		} else {
+			text.append(value);
+		}
+		text.append('\n');
+	}
+
+	private static void gauge(StringBuilder text, String name, String help,
+			long value) {
+		header(text, name, help, "gauge");
+		text.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static void counter(StringBuilder text, String name, String help,
+			long value) {
+		header(text, name, help, "counter");
+		text.append(name).append(' ').append(value).append('\n');
+	}
+
+	/**
+	 * This inner class is used for serving the metrics over HTTP.
+	 * 
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class MetricsHandler implements HttpHandler {
+		public void handle(HttpExchange exchange) throws IOException {
+			byte[] body = toPrometheusText().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type",
+					"text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream ostream = exchange.getResponseBody();
+			ostream.write(body);
+			ostream.close();
+		}
+	} // MetricsHandler
+}
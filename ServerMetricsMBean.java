@@ -0,0 +1,124 @@
+/**
+ * This interface is used to model the management interface of the metrics of
+ * a card game server, as exposed through JMX. Arrays indexed by message type
+ * follow the order of getMessageTypes().
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public interface ServerMetricsMBean {
+	/**
+	 * Returns the names of the message types.
+	 * 
+	 * @return the names of the message types
+	 */
+	public String[] getMessageTypes();
+
+	/**
+	 * Returns the number of messages received from the clients, by type.
+	 * 
+	 * @return the number of messages received, by type
+	 */
+	public long[] getMessagesReceived();
+
+	/**
+	 * Returns the number of messages queued to be sent to the clients, by
+	 * type.
+	 * 
+	 * @return the number of messages sent, by type
+	 */
+	public long[] getMessagesSent();
+
+	/**
+	 * Returns the median latency from parsing a message to broadcasting its
+	 * result, by type, in microseconds.
+	 * 
+	 * @return the median latency, by type
+	 */
+	public double[] getLatencyMedianMicros();
+
+	/**
+	 * Returns the 99th percentile of the latency from parsing a message to
+	 * broadcasting its result, by type, in microseconds.
+	 * 
+	 * @return the 99th percentile of the latency, by type
+	 */
+	public double[] getLatency99thPercentileMicros();
+
+	/**
+	 * Returns the number of connections seated at or watching the tables.
+	 * 
+	 * @return the number of connections
+	 */
+	public int getNumOfConnections();
+
+	/**
+	 * Returns the number of connections accepted since the server started.
+	 * 
+	 * @return the number of connections accepted
+	 */
+	public long getNumOfConnectionsAccepted();
+
+	/**
+	 * Returns the number of connections rejected because the server was full.
+	 * 
+	 * @return the number of connections rejected
+	 */
+	public long getNumOfConnectionsRejected();
+
+	/**
+	 * Returns the number of tables open.
+	 * 
+	 * @return the number of tables
+	 */
+	public int getNumOfTables();
+
+	/**
+	 * Returns the number of connections watching the tables.
+	 * 
+	 * @return the number of spectators
+	 */
+	public int getNumOfSpectators();
+
+	/**
+	 * Returns the number of bytes received from the clients.
+	 * 
+	 * @return the number of bytes received
+	 */
+	public long getBytesReceived();
+
+	/**
+	 * Returns the number of bytes sent to the clients.
+	 * 
+	 * @return the number of bytes sent
+	 */
+	public long getBytesSent();
+
+	/**
+	 * Returns the total number of messages queued but not yet written.
+	 * 
+	 * @return the total outbound queue depth
+	 */
+	public long getTotalOutboundQueueDepth();
+
+	/**
+	 * Returns the outbound queue depth of the slowest client.
+	 * 
+	 * @return the maximum outbound queue depth
+	 */
+	public int getMaxOutboundQueueDepth();
+
+	/**
+	 * Returns the number of user chat messages dropped for slow clients.
+	 * 
+	 * @return the number of messages dropped
+	 */
+	public long getNumOfDroppedMessages();
+
+	/**
+	 * Returns the number of log records dropped because the logger was busy.
+	 * 
+	 * @return the number of log records dropped
+	 */
+	public long getNumOfDroppedLogRecords();
+}
@@ -0,0 +1,162 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class is used to model a blocking connection to a client, carrying
+ * either Java-serialized messages or the frames of a codec over a socket. The
+ * queued messages are written by a writer thread dedicated to this
+ * connection.
+ * <p>
+ * Messages are written as the shared bytes of an EncodedMessage rather than
+ * through an ObjectOutputStream, so that a broadcast is encoded only once.
+ * Serialized messages start with a reset marker, which keeps the stream valid
+ * for the ObjectInputStream of the client.
+ *
+ * @author Kenneth Wong
+ *
+ */
+public class SocketConnection extends ClientConnection {
+	// marker put into the queue to stop the writer thread
+	private static final byte[] CLOSE = new byte[0];
+
+	private final Socket socket; // socket connection to the client
+	private final OutputStream ostream; // buffered OutputStream of the client
+	// the codec framing the messages, or null for Java serialization
+	private final MessageCodec codec;
+	// encoded messages waiting to be written by the writer thread
+	private final LinkedBlockingQueue<byte[]> outbound = new LinkedBlockingQueue<byte[]>();
+	private volatile boolean closed = false;
+	// a boolean indicating if the writer thread is stopping
+	private volatile boolean writerStopped = false;
+
+	/**
+	 * Creates and returns an instance of the SocketConnection class carrying
+	 * Java-serialized messages, and starts its writer thread.
+	 *
+	 * @param socket
+	 *            the socket connection to the client
+	 * @param threadFactory
+	 *            the factory creating the writer thread
+	 * @throws IOException
+	 *             if the header of the serialization stream cannot be written
+	 */
+	public SocketConnection(Socket socket, ThreadFactory threadFactory)
+			throws IOException {
+		this.socket = socket;
+		this.ostream = new BufferedOutputStream(socket.getOutputStream());
+		this.codec = null;
+		// writes the header of the serialization stream
+		new ObjectOutputStream(ostream).flush();
+		threadFactory.newThread(new Writer()).start();
+	}
+
+	/**
+	 * Creates and returns an instance of the SocketConnection class carrying
+	 * the frames of a binary codec, and starts its writer thread. The answer to
+	 * the hello of the client is written first.
+	 *
+	 * @param socket
+	 *            the socket connection to the client
+	 * @param threadFactory
+	 *            the factory creating the writer thread
+	 * @param codec
+	 *            the codec framing the messages
+	 * @param version
+	 *            the version of the binary protocol agreed with the client
+	 * @throws IOException
+	 *             if the answer to the hello cannot be written
+	 */
+	public SocketConnection(Socket socket, ThreadFactory threadFactory,
+			BinaryMessageCodec codec, int version) throws IOException {
+		this.socket = socket;
+		this.ostream = new BufferedOutputStream(socket.getOutputStream());
+		this.codec = codec;
+		ostream.write(BinaryMessageCodec.hello(version));
+		ostream.flush();
+		threadFactory.newThread(new Writer()).start();
+	}
+
+	/**
+	 * Returns the socket connection to the client.
+	 *
+	 * @return the socket connection to the client
+	 */
+	public Socket getSocket() {
+		return socket;
+	}
+
+	public SocketAddress getRemoteSocketAddress() {
+		return socket.getRemoteSocketAddress();
+	}
+
+	protected void enqueue(EncodedMessage message) throws IOException {
+		if (closed || writerStopped) {
+			throw new IOException("Connection closed");
+		}
+		outbound.add(codec == null ? message.getStreamBytes() : message
+				.getFrameBytes(codec));
+	}
+
+	/**
+	 * Stops the writer thread once the queued messages have been written. The
+	 * socket is left open until this connection is closed, e.g., for giving a
+	 * rejected client time to read its FULL message without holding a thread.
+	 */
+	public void stopWriter() {
+		if (!closed && !writerStopped) {
+			writerStopped = true;
+			outbound.add(CLOSE);
+		}
+	}
+
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		outbound.add(CLOSE);
+		try {
+			socket.close();
+		} catch (IOException ex) {
+			// the socket is unusable anyway
+		}
+	}
+
+	/**
+	 * This inner class is used for writing the queued messages to the client.
+	 *
+	 * @author Kenneth Wong
+	 *
+	 */
+	private class Writer implements Runnable {
+		// implementation of method from the Runnable interface
+		public void run() {
+			try {
+				byte[] bytes;
+				while ((bytes = outbound.take()) != CLOSE) {
+					ostream.write(bytes);
+					messageWritten();
+					bytesWritten(bytes.length);
+					// flushes once the queue is drained, so that a burst of
+					// messages is written in as few packets as possible
+					if (outbound.isEmpty()) {
+						ostream.flush();
+					}
+				}
+				if (!closed) {
+					// the writer is stopped: writes what is still buffered
+					ostream.flush();
+				}
+			} catch (Exception ex) {
+				// connection lost; the reader notices it as well
+				close();
+			}
+		} // run
+	} // Writer
+}
@@ -0,0 +1,189 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class is used to model a compact snapshot of the state of a table,
+ * sent to a client which resumes its session after losing its connection or
+ * asks to catch up with the table. It holds the version of the table (the
+ * sequence number of the last state change included), the names of the
+ * players, the cards in the hands of all the players (a MOVE message refers
+ * to the cards of the mover by their indices in hand, so a client needs every
+ * hand to follow the game), the last hand on the table, the active player and
+ * the number of passes in a row.
+ * <p>
+ * Cards are represented by their IDs (suit * 13 + rank), in the order in
+ * which they are held.
+ * 
+ * @author Kenneth Wong
+ *
+ */
+public class TableSnapshot implements Serializable {
+	private static final long serialVersionUID = -2715871862430583409L;
+	/**
+	 * The ID of a card hidden from spectators.
+	 */
+	public static final int HIDDEN_CARD = -1;
+
+	private final int version; // version of the table
+	private final String[] playerNames; // names of the players
+	private final boolean inProgress; // whether the game is in progress
+	private final int currentPlayerIdx; // index of the active player
+	private final int numOfPasses; // number of passes in a row
+	private final int[][] hands; // IDs of the cards in the hands
+	// index of the player who played the last hand, or -1 if none
+	private final int lastHandPlayerIdx;
+	// IDs of the cards of the last hand on the table, or null if none
+	private final int[] lastHand;
+
+	/**
+	 * Creates and returns an instance of the TableSnapshot class.
+	 * 
+	 * @param version
+	 *            the version of the table, i.e., the sequence number of the
+	 *            last state change included in this snapshot
+	 * @param playerNames
+	 *            the names of the players
+	 * @param inProgress
+	 *            whether the game is in progress
+	 * @param currentPlayerIdx
+	 *            the index of the active player
+	 * @param numOfPasses
+	 *            the number of passes in a row
+	 * @param hands
+	 *            the IDs of the cards in the hands of the players
+	 * @param lastHandPlayerIdx
+	 *            the index of the player who played the last hand, or -1 if no
+	 *            hand has been played
+	 * @param lastHand
+	 *            the IDs of the cards of the last hand on the table, or null
+	 *            if no hand has been played
+	 */
+	public TableSnapshot(int version, String[] playerNames,
+			boolean inProgress, int currentPlayerIdx, int numOfPasses,
+			int[][] hands, int lastHandPlayerIdx, int[] lastHand) {
+		this.version = version;
+		this.playerNames = playerNames;
+		this.inProgress = inProgress;
+		this.currentPlayerIdx = currentPlayerIdx;
+		this.numOfPasses = numOfPasses;
+		this.hands = hands;
+		this.lastHandPlayerIdx = lastHandPlayerIdx;
+		this.lastHand = lastHand;
+	}
+
+	/**
+	 * Returns the ID of the specified card.
+	 * 
+	 * @param card
+	 *            the card
+	 * @return the ID of the card (suit * 13 + rank)
+	 */
+	public static int getCardID(Card card) {
+		return card.getId();
+	}
+
+	/**
+	 * Returns the IDs of the cards in the specified list.
+	 * 
+	 * @param cards
+	 *            the list of cards
+	 * @return the IDs of the cards, in the order of the list
+	 */
+	public static int[] getCardIDs(CardList cards) {
+		int[] ids = new int[cards.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = getCardID(cards.getCard(i));
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns a view of this snapshot for spectators, in which the cards in
+	 * the hands of the players are hidden but their numbers are not.
+	 * 
+	 * @return a view of this snapshot with hidden hands
+	 */
+	public TableSnapshot getView() {
+		int[][] hiddenHands = new int[hands.length][];
+		for (int i = 0; i < hands.length; i++) {
+			hiddenHands[i] = new int[hands[i].length];
+			Arrays.fill(hiddenHands[i], HIDDEN_CARD);
+		}
+		return new TableSnapshot(version, playerNames, inProgress,
+				currentPlayerIdx, numOfPasses, hiddenHands, lastHandPlayerIdx,
+				lastHand);
+	}
+
+	/**
+	 * Returns the version of the table. The next state change broadcast by
+	 * the table has the sequence number version + 1.
+	 * 
+	 * @return the version of the table
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the names of the players.
+	 * 
+	 * @return the names of the players
+	 */
+	public String[] getPlayerNames() {
+		return playerNames;
+	}
+
+	/**
+	 * Returns true if the game is in progress.
+	 * 
+	 * @return true if the game is in progress; false otherwise
+	 */
+	public boolean isInProgress() {
+		return inProgress;
+	}
+
+	/**
+	 * Returns the index of the active player.
+	 * 
+	 * @return the index of the active player
+	 */
+	public int getCurrentPlayerIdx() {
+		return currentPlayerIdx;
+	}
+
+	/**
+	 * Returns the number of passes in a row.
+	 * 
+	 * @return the number of passes in a row
+	 */
+	public int getNumOfPasses() {
+		return numOfPasses;
+	}
+
+	/**
+	 * Returns the IDs of the cards in the hands of the players.
+	 * 
+	 * @return the IDs of the cards in the hands, by player
+	 */
+	public int[][] getHands() {
+		return hands;
+	}
+
+	/**
+	 * Returns the index of the player who played the last hand.
+	 * 
+	 * @return the index of the player, or -1 if no hand has been played
+	 */
+	public int getLastHandPlayerIdx() {
+		return lastHandPlayerIdx;
+	}
+
+	/**
+	 * Returns the IDs of the cards of the last hand on the table.
+	 * 
+	 * @return the IDs of the cards, or null if no hand has been played
+	 */
+	public int[] getLastHand() {
+		return lastHand;
+	}
+}